@@ -25,6 +25,16 @@ android {
         sourceCompatibility = JavaVersion.VERSION_1_8
         targetCompatibility = JavaVersion.VERSION_1_8
     }
+
+    sourceSets {
+        // The trace decoder is a standalone tool; PerfTraceTest checks it against the writer
+        getByName("test").java.srcDir("$rootDir/tools/perf-trace/src")
+    }
+
+    testOptions {
+        // Lets local tests drive CaptureController with a stand-in Context
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -0,0 +1,214 @@
+package com.example.soniccanvas;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Everything the renderers need from one audio frame, analysed once.
+ *
+ * Filled by FrameAnalyzer and never changed after it is handed out, so any
+ * number of renderers can read the same frame. Frames come from an
+ * AnalysisFramePool and are reference counted like AudioBuffer; a renderer
+ * that keeps a frame past the next onFrame() must retain it.
+ */
+public final class AnalysisFrame implements SampleSource {
+    private final AnalysisFramePool pool;
+    private final AtomicInteger refCount = new AtomicInteger();
+
+    // Heap frames are copied, since capture reuses its arrays; zero-copy frames are retained
+    private float[] samples = new float[0];
+    private AudioBuffer audioBuffer;
+    private int size;
+    private int sampleRate;
+    private long timestampNanos;
+    private float loudness;
+    private float rms;
+    private float gain;
+    private float level;
+    private boolean beat;
+    private float beatStrength;
+
+    private final float[] bands;
+    private boolean hasBands;
+    private final float[] notes;
+    private boolean hasNotes;
+    private float pitch = -1;
+    private float pitchProbability;
+
+    AnalysisFrame(AnalysisFramePool pool, int numBands, int numNotes) {
+        this.pool = pool;
+        bands = new float[numBands];
+        notes = new float[numNotes];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** Sample {@code i} in -1..1, before gain. */
+    @Override
+    public float sample(int i) {
+        return audioBuffer != null ? audioBuffer.sample(i) : samples[i];
+    }
+
+    public int sampleRate() {
+        return sampleRate;
+    }
+
+    /** System.nanoTime() when the frame was analysed. */
+    public long timestampNanos() {
+        return timestampNanos;
+    }
+
+    /** Mean absolute amplitude before gain, 0..1. */
+    public float loudness() {
+        return loudness;
+    }
+
+    /** Root-mean-square amplitude before gain, 0..1. */
+    public float rms() {
+        return rms;
+    }
+
+    /** Display gain chosen by the automatic gain control for this frame. */
+    public float gain() {
+        return gain;
+    }
+
+    /** Loudness after gain, 0..1. */
+    public float level() {
+        return level;
+    }
+
+    public int numBands() {
+        return bands.length;
+    }
+
+    /** Spectrum band amplitude, or the slice's mean amplitude when no spectrum was computed. */
+    public float band(int i) {
+        return bands[i];
+    }
+
+    public boolean hasBands() {
+        return hasBands;
+    }
+
+    public int numNotes() {
+        return notes.length;
+    }
+
+    /** Constant-Q amplitude of semitone {@code i}; only valid when hasNotes(). */
+    public float note(int i) {
+        return notes[i];
+    }
+
+    public boolean hasNotes() {
+        return hasNotes;
+    }
+
+    /** Fundamental in Hz, or -1 when unvoiced or not tracked. */
+    public float pitch() {
+        return pitch;
+    }
+
+    public float pitchProbability() {
+        return pitchProbability;
+    }
+
+    /** True if a beat onset was detected in this frame. */
+    public boolean beat() {
+        return beat;
+    }
+
+    /** How far the onset cleared the detector's threshold; 0 when not a beat. */
+    public float beatStrength() {
+        return beatStrength;
+    }
+
+    public void retain() {
+        refCount.incrementAndGet();
+    }
+
+    public void release() {
+        int remaining = refCount.decrementAndGet();
+        if (remaining == 0) {
+            if (audioBuffer != null) {
+                audioBuffer.release();
+                audioBuffer = null;
+            }
+            pool.recycle(this);
+        } else if (remaining < 0) {
+            throw new IllegalStateException("AnalysisFrame released more times than retained");
+        }
+    }
+
+    // Writers below are only used by FrameAnalyzer before the frame is handed out
+
+    void reset() {
+        refCount.set(1);
+        size = 0;
+        hasBands = false;
+        hasNotes = false;
+        pitch = -1;
+        pitchProbability = 0;
+        rms = 0;
+        beat = false;
+        beatStrength = 0;
+    }
+
+    void setSamples(float[] data, int size) {
+        if (samples.length < size) {
+            samples = new float[size];
+        }
+        System.arraycopy(data, 0, samples, 0, size);
+        this.size = size;
+    }
+
+    /** Takes over the caller's reference to {@code buffer}. */
+    void setAudioBuffer(AudioBuffer buffer) {
+        audioBuffer = buffer;
+        size = buffer.size();
+    }
+
+    void setTimestamp(long timestampNanos) {
+        this.timestampNanos = timestampNanos;
+    }
+
+    void setRms(float rms) {
+        this.rms = rms;
+    }
+
+    void setBeat(boolean beat, float strength) {
+        this.beat = beat;
+        beatStrength = strength;
+    }
+
+    void setLevels(int sampleRate, float loudness, float gain, float level) {
+        this.sampleRate = sampleRate;
+        this.loudness = loudness;
+        this.gain = gain;
+        this.level = level;
+    }
+
+    float[] bandsForWriting() {
+        hasBands = true;
+        return bands;
+    }
+
+    // Pooled frames keep their arrays, so bands nobody wrote are zeroed rather than left over
+    void clearBands() {
+        Arrays.fill(bands, 0f);
+        hasBands = false;
+    }
+
+    float[] notesForWriting() {
+        hasNotes = true;
+        return notes;
+    }
+
+    void setPitch(float pitch, float probability) {
+        this.pitch = pitch;
+        pitchProbability = probability;
+    }
+}
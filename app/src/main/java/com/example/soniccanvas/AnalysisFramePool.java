@@ -0,0 +1,37 @@
+package com.example.soniccanvas;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Fixed set of analysis frames, allocated once up front.
+ *
+ * Like AudioBufferPool, acquire() returns null rather than allocating when
+ * every frame is still held.
+ */
+final class AnalysisFramePool {
+    private final ArrayBlockingQueue<AnalysisFrame> free;
+
+    AnalysisFramePool(int count, int numBands, int numNotes) {
+        free = new ArrayBlockingQueue<>(count);
+        for (int i = 0; i < count; i++) {
+            free.offer(new AnalysisFrame(this, numBands, numNotes));
+        }
+    }
+
+    /** Returns a frame holding one reference for the caller, or null if the pool is exhausted. */
+    AnalysisFrame acquire() {
+        AnalysisFrame frame = free.poll();
+        if (frame != null) {
+            frame.reset();
+        }
+        return frame;
+    }
+
+    int available() {
+        return free.size();
+    }
+
+    void recycle(AnalysisFrame frame) {
+        free.offer(frame);
+    }
+}
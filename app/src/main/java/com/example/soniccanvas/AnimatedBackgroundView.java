@@ -4,29 +4,32 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.LinearGradient;
+import android.graphics.Matrix;
 import android.graphics.Paint;
-import android.graphics.Path;
 import android.graphics.RadialGradient;
 import android.graphics.Shader;
 import android.util.AttributeSet;
 import android.view.View;
 import android.animation.ValueAnimator;
 import android.view.animation.LinearInterpolator;
-import android.os.Handler;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
 public class AnimatedBackgroundView extends View {
+    private static final int MAX_BUBBLES = 12;
+    // Particle density follows audio energy between these counts
+    private static final int BASE_PARTICLES = 30;
+    private static final int MAX_PARTICLES = 3000;
+    // Longest step simulated in one frame, so a stall does not teleport everything
+    private static final float MAX_STEP_SECONDS = 0.1f;
+    // Speeds below were tuned per frame at 60 fps
+    private static final float FRAMES_PER_SECOND = 60f;
+
     private Paint backgroundPaint;
-    private List<Bubble> bubbles;
-    private List<FloatingParticle> particles;
     private Random random;
     private int width, height;
-    private final int MAX_BUBBLES = 12;
-    private final int MAX_PARTICLES = 30;
     private float time = 0;
+    private long lastFrameNanos = 0;
     private ValueAnimator animator;
 
     private int[] gradientColors = {
@@ -35,6 +38,29 @@ public class AnimatedBackgroundView extends View {
             Color.parseColor("#16213E")   // Deeper blue
     };
 
+    private final int[] bubbleColors = {
+            Color.parseColor("#BB86FC"), // Purple
+            Color.parseColor("#03DAC6"), // Teal
+            Color.parseColor("#CF6679")  // Pink
+    };
+
+    // Bubbles as parallel arrays; one that leaves the top is respawned in place
+    private final float[] bubbleX = new float[MAX_BUBBLES];
+    private final float[] bubbleY = new float[MAX_BUBBLES];
+    private final float[] bubbleSize = new float[MAX_BUBBLES];
+    private final float[] bubbleSpeed = new float[MAX_BUBBLES];
+    private final float[] bubbleAlpha = new float[MAX_BUBBLES];
+    private final float[] bubbleWobbleOffset = new float[MAX_BUBBLES];
+    private final float[] bubbleWobbleSpeed = new float[MAX_BUBBLES];
+    private final int[] bubbleColor = new int[MAX_BUBBLES];
+    // One unit-radius gradient per color, placed with a reused matrix instead of a new shader per draw
+    private Shader[] bubbleShaders;
+    private final Matrix bubbleMatrix = new Matrix();
+    private Paint bubblePaint;
+
+    private ParticleSystem particles;
+    private Paint particlePaint;
+
     public AnimatedBackgroundView(Context context) {
         super(context);
         init();
@@ -52,9 +78,24 @@ public class AnimatedBackgroundView extends View {
 
     private void init() {
         backgroundPaint = new Paint();
-        bubbles = new ArrayList<>();
-        particles = new ArrayList<>();
         random = new Random();
+        particles = new ParticleSystem(MAX_PARTICLES, BASE_PARTICLES, random);
+
+        bubblePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        bubblePaint.setStyle(Paint.Style.FILL);
+        bubbleShaders = new Shader[bubbleColors.length];
+        for (int i = 0; i < bubbleColors.length; i++) {
+            int color = bubbleColors[i];
+            bubbleShaders[i] = new RadialGradient(
+                    0, 0, 1,
+                    color,
+                    Color.argb(0, Color.red(color), Color.green(color), Color.blue(color)),
+                    Shader.TileMode.CLAMP);
+        }
+
+        particlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        particlePaint.setColor(Color.WHITE);
+        particlePaint.setStrokeCap(Paint.Cap.ROUND);
 
         // Start animation
         animator = ValueAnimator.ofFloat(0, 1);
@@ -67,18 +108,11 @@ public class AnimatedBackgroundView extends View {
             invalidate();
         });
         animator.start();
+    }
 
-        // Schedule particle creation
-        final Handler handler = new Handler();
-        handler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                if (particles.size() < MAX_PARTICLES && width > 0 && height > 0) {
-                    addParticle();
-                }
-                handler.postDelayed(this, 300);
-            }
-        }, 300);
+    /** Audio energy, 0..1; more energy means more and faster particles. */
+    public void setEnergy(float energy) {
+        particles.setEnergy(energy);
     }
 
     @Override
@@ -99,203 +133,119 @@ public class AnimatedBackgroundView extends View {
     }
 
     private void initializeElements() {
-        bubbles.clear();
-        particles.clear();
-
-        // Create initial bubbles
         for (int i = 0; i < MAX_BUBBLES; i++) {
-            addBubble();
+            spawnBubble(i);
         }
 
-        // Create initial particles
-        for (int i = 0; i < MAX_PARTICLES / 2; i++) {
-            addParticle();
+        particles.clear();
+        for (int i = 0; i < BASE_PARTICLES / 2; i++) {
+            particles.spawn(width, height);
         }
     }
 
-    private void addBubble() {
+    private void spawnBubble(int i) {
         float size = 50 + random.nextFloat() * 150;
-        float x = random.nextFloat() * width;
-        float y = height + size;
-        float speed = 0.5f + random.nextFloat() * 1.5f;
-        int alpha = 50 + random.nextInt(100); // semi-transparent bubbles
-
-        int colorIndex = random.nextInt(3);
-        int color;
-        switch (colorIndex) {
-            case 0:
-                color = Color.parseColor("#BB86FC"); // Purple
-                break;
-            case 1:
-                color = Color.parseColor("#03DAC6"); // Teal
-                break;
-            case 2:
-            default:
-                color = Color.parseColor("#CF6679"); // Pink
-                break;
-        }
-
-        bubbles.add(new Bubble(x, y, size, speed, color, alpha));
-    }
-
-    private void addParticle() {
-        float size = 2 + random.nextFloat() * 4;
-        float x = random.nextFloat() * width;
-        float y = random.nextFloat() * height;
-        float speedX = -0.5f + random.nextFloat();
-        float speedY = -0.5f + random.nextFloat();
-        int alpha = 50 + random.nextInt(100);
-        int color = Color.parseColor("#FFFFFF");
-
-        particles.add(new FloatingParticle(x, y, size, speedX, speedY, color, alpha));
+        bubbleSize[i] = size;
+        bubbleX[i] = random.nextFloat() * width;
+        bubbleY[i] = height + size;
+        bubbleSpeed[i] = (0.5f + random.nextFloat() * 1.5f) * FRAMES_PER_SECOND;
+        bubbleAlpha[i] = 50 + random.nextInt(100); // semi-transparent bubbles
+        bubbleColor[i] = random.nextInt(bubbleColors.length);
+        bubbleWobbleOffset[i] = random.nextFloat() * 6.28f; // 2π
+        bubbleWobbleSpeed[i] = 0.01f + random.nextFloat() * 0.03f;
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
+        long now = System.nanoTime();
+        float dt = lastFrameNanos == 0 ? 0 : Math.min(MAX_STEP_SECONDS, (now - lastFrameNanos) / 1e9f);
+        lastFrameNanos = now;
+
         // Draw background gradient
         canvas.drawRect(0, 0, width, height, backgroundPaint);
 
-        // Update and draw bubbles
-        for (int i = bubbles.size() - 1; i >= 0; i--) {
-            Bubble bubble = bubbles.get(i);
-            bubble.update();
-            bubble.draw(canvas);
-
-            // Remove bubbles that have left the screen
-            if (bubble.y + bubble.size < 0) {
-                bubbles.remove(i);
-                // Add a new bubble to replace it
-                if (bubbles.size() < MAX_BUBBLES) {
-                    addBubble();
-                }
-            }
-        }
+        updateBubbles(dt);
+        drawBubbles(canvas);
 
-        // Update and draw particles
-        for (int i = particles.size() - 1; i >= 0; i--) {
-            FloatingParticle particle = particles.get(i);
-            particle.update();
-            particle.draw(canvas);
-
-            // Remove particles that have left the screen or expired
-            if (particle.x < -particle.size || particle.x > width + particle.size ||
-                    particle.y < -particle.size || particle.y > height + particle.size ||
-                    particle.alpha <= 10) {
-                particles.remove(i);
-            }
-        }
-
-        // Add bubbles if needed
-        if (bubbles.size() < MAX_BUBBLES / 2) {
-            addBubble();
-        }
+        particles.update(dt, width, height);
+        drawParticles(canvas);
     }
 
-    @Override
-    protected void onDetachedFromWindow() {
-        super.onDetachedFromWindow();
-        if (animator != null) {
-            animator.cancel();
-        }
-    }
-
-    // Bubble class for background animation
-    private class Bubble {
-        float x, y;
-        float size;
-        float speed;
-        int color;
-        int alpha;
-        Paint paint;
-        float wobbleOffset;
-        float wobbleSpeed;
-
-        Bubble(float x, float y, float size, float speed, int color, int alpha) {
-            this.x = x;
-            this.y = y;
-            this.size = size;
-            this.speed = speed;
-            this.color = color;
-            this.alpha = alpha;
-
-            paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-            paint.setColor(color);
-            paint.setAlpha(alpha);
-            paint.setStyle(Paint.Style.FILL);
-
-            wobbleOffset = random.nextFloat() * 6.28f; // 2π
-            wobbleSpeed = 0.01f + random.nextFloat() * 0.03f;
-        }
-
-        void update() {
-            y -= speed; // Move upward
+    private void updateBubbles(float dt) {
+        float frames = dt * FRAMES_PER_SECOND;
+        for (int i = 0; i < MAX_BUBBLES; i++) {
+            bubbleY[i] -= bubbleSpeed[i] * dt; // Move upward
 
             // Add slight horizontal wobble
-            x += Math.sin(time * 6.28f + wobbleOffset) * wobbleSpeed * size;
+            bubbleX[i] += (float) Math.sin(time * 6.28f + bubbleWobbleOffset[i]) * bubbleWobbleSpeed[i] * bubbleSize[i] * frames;
 
             // Gradually fade out as it reaches the top
-            if (y < height / 3) {
-                alpha = Math.max(10, alpha - 1);
-                paint.setAlpha(alpha);
+            if (bubbleY[i] < height / 3) {
+                bubbleAlpha[i] = Math.max(10, bubbleAlpha[i] - frames);
             }
-        }
 
-        void draw(Canvas canvas) {
-            // Create a radial gradient for a more interesting bubble look
-            RadialGradient gradient = new RadialGradient(
-                    x, y, size,
-                    Color.argb(alpha, Color.red(color), Color.green(color), Color.blue(color)),
-                    Color.argb(0, Color.red(color), Color.green(color), Color.blue(color)),
-                    Shader.TileMode.CLAMP);
+            // Bubbles that have left the screen start again from the bottom
+            if (bubbleY[i] + bubbleSize[i] < 0) {
+                spawnBubble(i);
+            }
+        }
+    }
 
-            paint.setShader(gradient);
-            canvas.drawCircle(x, y, size, paint);
-            paint.setShader(null);
+    private void drawBubbles(Canvas canvas) {
+        for (int i = 0; i < MAX_BUBBLES; i++) {
+            float x = bubbleX[i];
+            float y = bubbleY[i];
+            float size = bubbleSize[i];
+            int alpha = (int) bubbleAlpha[i];
+            Shader shader = bubbleShaders[bubbleColor[i]];
+
+            bubbleMatrix.setScale(size, size);
+            bubbleMatrix.postTranslate(x, y);
+            shader.setLocalMatrix(bubbleMatrix);
+            bubblePaint.setShader(shader);
+            // The gradient used to carry the alpha too, so the centre shows alpha²
+            bubblePaint.setAlpha(alpha * alpha / 255);
+            canvas.drawCircle(x, y, size, bubblePaint);
+            bubblePaint.setShader(null);
 
             // Draw a slight highlight
-            paint.setAlpha(alpha / 3);
-            canvas.drawCircle(x - size/4, y - size/4, size/4, paint);
+            bubblePaint.setColor(bubbleColors[bubbleColor[i]]);
+            bubblePaint.setAlpha(alpha / 3);
+            canvas.drawCircle(x - size / 4, y - size / 4, size / 4, bubblePaint);
         }
     }
 
-    // Floating particle class
-    private class FloatingParticle {
-        float x, y;
-        float size;
-        float speedX, speedY;
-        int color;
-        int alpha;
-        Paint paint;
-
-        FloatingParticle(float x, float y, float size, float speedX, float speedY, int color, int alpha) {
-            this.x = x;
-            this.y = y;
-            this.size = size;
-            this.speedX = speedX;
-            this.speedY = speedY;
-            this.color = color;
-            this.alpha = alpha;
-
-            paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-            paint.setColor(color);
-            paint.setAlpha(alpha);
-            paint.setStyle(Paint.Style.FILL);
+    private void drawParticles(Canvas canvas) {
+        particles.prepareBatches();
+        float[] points = particles.points();
+        for (int sizeClass = 0; sizeClass < ParticleSystem.SIZE_CLASSES; sizeClass++) {
+            particlePaint.setStrokeWidth(ParticleSystem.radius(sizeClass) * 2);
+            for (int level = 0; level < ParticleSystem.ALPHA_LEVELS; level++) {
+                int batch = ParticleSystem.batch(sizeClass, level);
+                int count = particles.batchCount(batch);
+                if (count == 0) continue;
+                particlePaint.setAlpha(ParticleSystem.levelAlpha(level));
+                canvas.drawPoints(points, particles.batchStart(batch) * 2, count * 2, particlePaint);
+            }
         }
+    }
 
-        void update() {
-            x += speedX;
-            y += speedY;
-
-            // Gradually fade
-            alpha -= 0.2f;
-            if (alpha < 0) alpha = 0;
-            paint.setAlpha(alpha);
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (animator != null && !animator.isStarted()) {
+            lastFrameNanos = 0;
+            animator.start();
         }
+    }
 
-        void draw(Canvas canvas) {
-            canvas.drawCircle(x, y, size, paint);
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (animator != null) {
+            animator.cancel();
         }
     }
 }
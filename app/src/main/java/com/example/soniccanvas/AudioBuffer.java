@@ -0,0 +1,96 @@
+package com.example.soniccanvas;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A preallocated native-order direct buffer that AudioRecord reads into.
+ *
+ * Consumers read samples through the ShortBuffer/FloatBuffer view instead of
+ * copying into heap arrays. The buffer is reference counted and goes back to
+ * its pool once every consumer has released it.
+ */
+public final class AudioBuffer implements SampleSource {
+    private final AudioBufferPool pool;
+    private final ByteBuffer bytes;
+    private final ShortBuffer shortView;
+    private final FloatBuffer floatView;
+    private final boolean isFloat;
+    private final int capacity;
+    private final AtomicInteger refCount = new AtomicInteger();
+    private int size;
+
+    AudioBuffer(AudioBufferPool pool, int capacity, boolean isFloat) {
+        this.pool = pool;
+        this.capacity = capacity;
+        this.isFloat = isFloat;
+        bytes = ByteBuffer.allocateDirect(capacity * (isFloat ? 4 : 2)).order(ByteOrder.nativeOrder());
+        shortView = isFloat ? null : bytes.asShortBuffer();
+        floatView = isFloat ? bytes.asFloatBuffer() : null;
+    }
+
+    /** The backing direct buffer, for AudioRecord.read(ByteBuffer, int, int). */
+    public ByteBuffer bytes() {
+        return bytes;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int capacityInBytes() {
+        return bytes.capacity();
+    }
+
+    public boolean isFloat() {
+        return isFloat;
+    }
+
+    /** Number of valid frames. */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** Records how many bytes the last read delivered. */
+    public void setSizeInBytes(int sizeInBytes) {
+        size = sizeInBytes / (isFloat ? 4 : 2);
+    }
+
+    /** Sample {@code i} normalised to [-1, 1]. */
+    @Override
+    public float sample(int i) {
+        return isFloat ? floatView.get(i) : shortView.get(i) / 32768f;
+    }
+
+    public ShortBuffer shortView() {
+        return shortView;
+    }
+
+    public FloatBuffer floatView() {
+        return floatView;
+    }
+
+    /** Adds a reference for one more consumer. */
+    public void retain() {
+        refCount.incrementAndGet();
+    }
+
+    /** Drops one reference and returns the buffer to its pool when none are left. */
+    public void release() {
+        int remaining = refCount.decrementAndGet();
+        if (remaining == 0) {
+            pool.recycle(this);
+        } else if (remaining < 0) {
+            throw new IllegalStateException("AudioBuffer released more times than retained");
+        }
+    }
+
+    void reset() {
+        size = 0;
+        refCount.set(1);
+    }
+}
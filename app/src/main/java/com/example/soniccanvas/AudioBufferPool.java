@@ -0,0 +1,49 @@
+package com.example.soniccanvas;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Fixed set of direct capture buffers, allocated once up front.
+ *
+ * acquire() never allocates and never blocks: if every buffer is still held
+ * downstream it returns null and the caller decides what to drop.
+ */
+public final class AudioBufferPool {
+    private final ArrayBlockingQueue<AudioBuffer> free;
+    private final int frames;
+    private final boolean isFloat;
+
+    public AudioBufferPool(int count, int frames, boolean isFloat) {
+        this.frames = frames;
+        this.isFloat = isFloat;
+        free = new ArrayBlockingQueue<>(count);
+        for (int i = 0; i < count; i++) {
+            free.offer(new AudioBuffer(this, frames, isFloat));
+        }
+    }
+
+    public int frames() {
+        return frames;
+    }
+
+    public boolean isFloat() {
+        return isFloat;
+    }
+
+    /** Returns a buffer holding one reference for the caller, or null if the pool is exhausted. */
+    public AudioBuffer acquire() {
+        AudioBuffer buffer = free.poll();
+        if (buffer != null) {
+            buffer.reset();
+        }
+        return buffer;
+    }
+
+    public int available() {
+        return free.size();
+    }
+
+    void recycle(AudioBuffer buffer) {
+        free.offer(buffer);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.soniccanvas;
+
+/**
+ * Hands the latest capture frame from a capture thread to the main thread.
+ *
+ * A frame that arrives before the previous one was applied replaces it, so
+ * the main thread never works through a backlog. The owner keeps one
+ * Runnable that calls apply, and posts it only when offer returns true;
+ * nothing is allocated per frame. A replaced zero-copy buffer is released
+ * here, since the slot holds the reference the capture thread gave it.
+ */
+final class AudioFrameSlot {
+    interface Consumer {
+        void onAudioData(float magnitude, float[] data, int size, int sampleRate);
+
+        /** Takes over the slot's reference to {@code buffer}. */
+        void onAudioBuffer(float magnitude, AudioBuffer buffer, int sampleRate);
+    }
+
+    private float magnitude;
+    private float[] data;
+    private int size;
+    private AudioBuffer buffer;
+    private int sampleRate;
+    private boolean posted = false;
+
+    /** @return true if the caller should post its apply Runnable */
+    boolean offer(float magnitude, float[] data, int size, int sampleRate) {
+        AudioBuffer replaced;
+        boolean post;
+        synchronized (this) {
+            replaced = buffer;
+            this.magnitude = magnitude;
+            this.data = data;
+            this.size = size;
+            this.sampleRate = sampleRate;
+            buffer = null;
+            post = !posted;
+            posted = true;
+        }
+        if (replaced != null) replaced.release();
+        return post;
+    }
+
+    /** Takes over the caller's reference to {@code buffer}. */
+    boolean offer(float magnitude, AudioBuffer buffer, int sampleRate) {
+        AudioBuffer replaced;
+        boolean post;
+        synchronized (this) {
+            replaced = this.buffer;
+            this.magnitude = magnitude;
+            this.buffer = buffer;
+            this.sampleRate = sampleRate;
+            data = null;
+            post = !posted;
+            posted = true;
+        }
+        if (replaced != null) replaced.release();
+        return post;
+    }
+
+    /**
+     * Delivers the pending frame, if any, to {@code consumer}.
+     *
+     * @return false if there was nothing to apply
+     */
+    boolean apply(Consumer consumer) {
+        float magnitude;
+        float[] data;
+        int size;
+        AudioBuffer buffer;
+        int sampleRate;
+        synchronized (this) {
+            posted = false;
+            magnitude = this.magnitude;
+            data = this.data;
+            size = this.size;
+            buffer = this.buffer;
+            sampleRate = this.sampleRate;
+            this.data = null;
+            this.buffer = null;
+        }
+        if (buffer != null) {
+            consumer.onAudioBuffer(magnitude, buffer, sampleRate);
+        } else if (data != null) {
+            consumer.onAudioData(magnitude, data, size, sampleRate);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /** Drops the pending frame; a posted apply then finds nothing. */
+    void clear() {
+        AudioBuffer dropped;
+        synchronized (this) {
+            dropped = buffer;
+            buffer = null;
+            data = null;
+        }
+        if (dropped != null) dropped.release();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.soniccanvas;
+
+/**
+ * Derives the display gain from running loudness percentiles.
+ *
+ * Per-frame loudness (mean absolute amplitude, 0..1) feeds two P² estimators,
+ * one for the loud end and one for the noise floor. The gain maps the loud
+ * percentile to TARGET_LEVEL but never lifts the floor above NOISE_LEVEL, so
+ * quiet rooms come alive without blowing up hiss and loud rooms stop pinning
+ * at the clamp. Two estimator sets restart half a window apart so the
+ * percentiles follow the last few seconds instead of all history.
+ */
+public final class AutoGainControl {
+    private static final double LOUD_QUANTILE = 0.9;
+    private static final double FLOOR_QUANTILE = 0.1;
+    // Where the loud percentile lands after gain, as a fraction of full scale
+    private static final float TARGET_LEVEL = 0.25f;
+    private static final float NOISE_LEVEL = 0.06f;
+    private static final float MIN_GAIN = 0.5f;
+    private static final float MAX_GAIN = 200f;
+    // Gain used until the estimators have seen enough frames
+    private static final float DEFAULT_GAIN = 5f;
+    // Frames per estimator window; about ten seconds at 60 frames/s
+    private static final int WINDOW = 600;
+    // Per-frame step towards the computed gain, hides the window hand-over
+    private static final float GAIN_SMOOTHING = 0.05f;
+    private static final int MIN_FRAMES = 30;
+
+    private final P2Quantile[] loud = {new P2Quantile(LOUD_QUANTILE), new P2Quantile(LOUD_QUANTILE)};
+    private final P2Quantile[] floor = {new P2Quantile(FLOOR_QUANTILE), new P2Quantile(FLOOR_QUANTILE)};
+    private int frames = 0;
+    private float gain = DEFAULT_GAIN;
+
+    public float gain() {
+        return gain;
+    }
+
+    public void reset() {
+        for (int i = 0; i < 2; i++) {
+            loud[i].reset();
+            floor[i].reset();
+        }
+        frames = 0;
+        gain = DEFAULT_GAIN;
+    }
+
+    /** Adds one frame's loudness and returns the updated gain. */
+    public float process(float loudness) {
+        // Estimator 1 starts half a window after estimator 0, then each restarts every WINDOW frames
+        if (frames % WINDOW == 0) {
+            loud[0].reset();
+            floor[0].reset();
+        }
+        if (frames % WINDOW == WINDOW / 2) {
+            loud[1].reset();
+            floor[1].reset();
+        }
+        frames++;
+
+        loud[0].add(loudness);
+        floor[0].add(loudness);
+        if (frames > WINDOW / 2) {
+            loud[1].add(loudness);
+            floor[1].add(loudness);
+        }
+
+        // Read from whichever set has seen more frames
+        int older = loud[0].count() >= loud[1].count() ? 0 : 1;
+        if (loud[older].count() < MIN_FRAMES) {
+            return gain;
+        }
+
+        float loudLevel = (float) loud[older].estimate();
+        float floorLevel = (float) floor[older].estimate();
+        float target = loudLevel > 0 ? TARGET_LEVEL / loudLevel : MAX_GAIN;
+        if (floorLevel > 0) {
+            target = Math.min(target, NOISE_LEVEL / floorLevel);
+        }
+        target = Math.max(MIN_GAIN, Math.min(target, MAX_GAIN));
+
+        gain += (target - gain) * GAIN_SMOOTHING;
+        return gain;
+    }
+}
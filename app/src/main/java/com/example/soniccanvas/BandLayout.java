@@ -0,0 +1,60 @@
+package com.example.soniccanvas;
+
+/**
+ * Log-spaced grouping of FFT bins into display bands.
+ *
+ * Built once per FFT size and sample rate and shared by both spectrum
+ * engines, so they sum exactly the same bins.
+ */
+final class BandLayout {
+    static final float MIN_FREQUENCY = 60f;
+    static final float MAX_FREQUENCY = 16000f;
+
+    private final int fftSize;
+    private final int sampleRate;
+    private final int[] start;
+    private final int[] end;
+
+    BandLayout(int fftSize, int sampleRate, int numBands) {
+        this.fftSize = fftSize;
+        this.sampleRate = sampleRate;
+        start = new int[numBands];
+        end = new int[numBands];
+
+        int lastBin = fftSize / 2;
+        float binWidth = (float) sampleRate / fftSize;
+        float maxFrequency = Math.min(MAX_FREQUENCY, sampleRate / 2f);
+        double ratio = Math.log(maxFrequency / MIN_FREQUENCY);
+        int bin = Math.max(1, Math.round(MIN_FREQUENCY / binWidth));
+        for (int i = 0; i < numBands; i++) {
+            double upper = MIN_FREQUENCY * Math.exp(ratio * (i + 1) / numBands);
+            // Every band gets at least one bin, even where the log spacing is finer than the FFT
+            int upperBin = Math.max(bin + 1, (int) Math.round(upper / binWidth));
+            start[i] = Math.min(bin, lastBin);
+            end[i] = Math.min(upperBin, lastBin + 1);
+            bin = upperBin;
+        }
+    }
+
+    int fftSize() {
+        return fftSize;
+    }
+
+    int sampleRate() {
+        return sampleRate;
+    }
+
+    int numBands() {
+        return start.length;
+    }
+
+    /** First FFT bin of band {@code i}. */
+    int start(int i) {
+        return start[i];
+    }
+
+    /** One past the last FFT bin of band {@code i}. */
+    int end(int i) {
+        return end[i];
+    }
+}
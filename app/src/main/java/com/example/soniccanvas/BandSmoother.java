@@ -0,0 +1,123 @@
+package com.example.soniccanvas;
+
+/**
+ * Per-band temporal smoothing with separate attack and release time
+ * constants and optional falling peak-hold caps.
+ *
+ * Targets are set whenever analysis produces a new frame; advance() is
+ * called once per displayed frame with the frame time, so the motion
+ * depends on elapsed milliseconds rather than on how often audio or vsync
+ * happen to arrive. Everything lives in preallocated primitive arrays.
+ */
+final class BandSmoother {
+    // Below this the bands are considered settled and no more frames are needed
+    private static final float SETTLE_EPSILON = 0.5f;
+    // Longest step we integrate in one go, so a stalled frame doesn't snap the bands
+    private static final long MAX_STEP_NANOS = 100_000_000L;
+
+    private final int bands;
+    private final float[] targets;
+    private final float[] values;
+    private final float[] peaks;
+    private final float[] peakHoldRemainingMs;
+
+    private float attackMs;
+    private float releaseMs;
+    private float peakHoldMs;
+    private float peakFallPerSecond;
+    private long lastFrameNanos = 0;
+
+    BandSmoother(int bands, float attackMs, float releaseMs) {
+        this.bands = bands;
+        this.attackMs = attackMs;
+        this.releaseMs = releaseMs;
+        targets = new float[bands];
+        values = new float[bands];
+        peaks = new float[bands];
+        peakHoldRemainingMs = new float[bands];
+    }
+
+    int bands() {
+        return bands;
+    }
+
+    void setTimeConstants(float attackMs, float releaseMs) {
+        this.attackMs = attackMs;
+        this.releaseMs = releaseMs;
+    }
+
+    /** Enables peak caps that hold for {@code holdMs} and then fall at {@code fallPerSecond} units/s. */
+    void setPeakHold(float holdMs, float fallPerSecond) {
+        this.peakHoldMs = holdMs;
+        this.peakFallPerSecond = fallPerSecond;
+    }
+
+    void setTargets(float[] newTargets) {
+        System.arraycopy(newTargets, 0, targets, 0, bands);
+    }
+
+    float value(int band) {
+        return values[band];
+    }
+
+    float peak(int band) {
+        return peaks[band];
+    }
+
+    float[] values() {
+        return values;
+    }
+
+    void reset() {
+        for (int i = 0; i < bands; i++) {
+            targets[i] = 0;
+            values[i] = 0;
+            peaks[i] = 0;
+            peakHoldRemainingMs[i] = 0;
+        }
+        lastFrameNanos = 0;
+    }
+
+    /**
+     * Moves every band towards its target by the time since the previous call.
+     *
+     * @return true while bands or peaks are still moving
+     */
+    boolean advance(long frameTimeNanos) {
+        long stepNanos = lastFrameNanos == 0 ? 0 : frameTimeNanos - lastFrameNanos;
+        lastFrameNanos = frameTimeNanos;
+        if (stepNanos < 0) stepNanos = 0;
+        if (stepNanos > MAX_STEP_NANOS) stepNanos = MAX_STEP_NANOS;
+        float dtMs = stepNanos / 1_000_000f;
+
+        // Exact exponential response for this step, two exp() calls per frame not per band
+        float attack = attackMs > 0 ? 1f - (float) Math.exp(-dtMs / attackMs) : 1f;
+        float release = releaseMs > 0 ? 1f - (float) Math.exp(-dtMs / releaseMs) : 1f;
+        float fall = peakFallPerSecond * dtMs / 1000f;
+        boolean holdPeaks = peakHoldMs > 0;
+
+        boolean moving = false;
+        for (int i = 0; i < bands; i++) {
+            float target = targets[i];
+            float value = values[i];
+            value += (target - value) * (target > value ? attack : release);
+            values[i] = value;
+            if (Math.abs(target - value) > SETTLE_EPSILON) moving = true;
+
+            if (!holdPeaks) continue;
+            float peak = peaks[i];
+            if (value >= peak) {
+                peak = value;
+                peakHoldRemainingMs[i] = peakHoldMs;
+            } else if (peakHoldRemainingMs[i] > 0) {
+                peakHoldRemainingMs[i] -= dtMs;
+                moving = true;
+            } else {
+                peak = Math.max(value, peak - fall);
+                if (peak > value + SETTLE_EPSILON) moving = true;
+            }
+            peaks[i] = peak;
+        }
+        return moving;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.soniccanvas;
+
+/**
+ * Cached geometry for the bars visualization: bar edges for the current
+ * size, and the mapping from band values to on-screen heights.
+ */
+final class BarGeometry {
+    private final int numBars;
+    private final float[] left;
+    private final float[] right;
+    private final float[] highlightRight;
+    private int height;
+
+    BarGeometry(int numBars) {
+        this.numBars = numBars;
+        left = new float[numBars];
+        right = new float[numBars];
+        highlightRight = new float[numBars];
+    }
+
+    int numBars() {
+        return numBars;
+    }
+
+    float left(int i) {
+        return left[i];
+    }
+
+    float right(int i) {
+        return right[i];
+    }
+
+    float highlightRight(int i) {
+        return highlightRight[i];
+    }
+
+    int height() {
+        return height;
+    }
+
+    void setSize(int width, int height) {
+        this.height = height;
+        float barWidth = (width / (float) numBars) * 0.8f;
+        float spacing = (width - (numBars * barWidth)) / (numBars + 1);
+        float x = spacing;
+        for (int i = 0; i < numBars; i++) {
+            left[i] = x;
+            right[i] = x + barWidth;
+            highlightRight[i] = x + barWidth * 0.3f;
+            x += barWidth + spacing;
+        }
+    }
+
+    /** Heights for band values, one band per bar. */
+    void computeBandHeights(float[] bands, float sensitivity, float[] outHeights) {
+        float maxHeight = height * 0.8f;
+        float scale = maxHeight * sensitivity;
+        for (int i = 0; i < numBars; i++) {
+            // Limit bar height with sensitivity
+            float barHeight = Math.min(bands[i] * scale, maxHeight);
+            if (barHeight < 10) barHeight = 10; // Minimum bar height
+            outHeights[i] = barHeight;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.soniccanvas;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+public class BarsRenderer implements Renderer {
+    public static final int DEFAULT_BARS = 32;
+    private static final float ATTACK_MS = 20f;
+    private static final float RELEASE_MS = 180f;
+    private static final float PEAK_HOLD_MS = 350f;
+    // Peak caps fall this fraction of the view height per second
+    private static final float PEAK_FALL_RATE = 0.6f;
+    private static final float PEAK_CAP_HEIGHT = 6f;
+
+    private final Paint paint;
+    private final BarGeometry geometry;
+    private final BandSmoother smoother;
+    private final float[] targets;
+    private final float[] bands;
+    private boolean hasFrame = false;
+
+    public BarsRenderer(int color) {
+        this(color, DEFAULT_BARS);
+    }
+
+    public BarsRenderer(int color, int numBars) {
+        paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(color);
+        paint.setStyle(Paint.Style.FILL);
+        geometry = new BarGeometry(numBars);
+        smoother = new BandSmoother(numBars, ATTACK_MS, RELEASE_MS);
+        targets = new float[numBars];
+        bands = new float[numBars];
+    }
+
+    @Override
+    public void setSize(int width, int height) {
+        geometry.setSize(width, height);
+        smoother.setPeakHold(PEAK_HOLD_MS, height * PEAK_FALL_RATE);
+    }
+
+    @Override
+    public void onFrame(AnalysisFrame frame) {
+        if (!frame.hasBands() || frame.numBands() != bands.length) return;
+        // Spectrum bands when the analysis pass has them, slice averages otherwise
+        for (int i = 0; i < bands.length; i++) {
+            bands[i] = frame.band(i);
+        }
+        geometry.computeBandHeights(bands, frame.gain(), targets);
+        smoother.setTargets(targets);
+        hasFrame = true;
+    }
+
+    @Override
+    public void clear() {
+        smoother.reset();
+        hasFrame = false;
+    }
+
+    @Override
+    public boolean draw(Canvas canvas, long frameTimeNanos) {
+        if (!hasFrame) return false;
+
+        boolean animating = smoother.advance(frameTimeNanos);
+        float bottom = geometry.height();
+        for (int i = 0; i < smoother.bands(); i++) {
+            float top = bottom - smoother.value(i);
+            float left = geometry.left(i);
+            float right = geometry.right(i);
+
+            // Draw rounded bar
+            paint.setAlpha(255);
+            canvas.drawRoundRect(left, top, right, bottom, 8, 8, paint);
+
+            // Draw bar highlight
+            paint.setAlpha(60);
+            canvas.drawRect(left, top, geometry.highlightRight(i), bottom, paint);
+
+            // Draw falling peak cap
+            float peakTop = bottom - smoother.peak(i) - PEAK_CAP_HEIGHT;
+            paint.setAlpha(200);
+            canvas.drawRect(left, peakTop, right, peakTop + PEAK_CAP_HEIGHT, paint);
+        }
+        return animating;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.soniccanvas;
+
+/**
+ * Spectral-flux onset detector over the analysis bands.
+ *
+ * The flux of a frame is how much the bands rose since the previous one.
+ * A beat is a flux above the recent mean by SENSITIVITY standard
+ * deviations, at least MIN_INTERVAL_NANOS after the last beat, so a
+ * sustained loud passage does not fire on every frame. History is a fixed
+ * ring and nothing is allocated per frame.
+ */
+final class BeatDetector {
+    // About 0.7 s of analysis frames at 60 frames/s
+    private static final int HISTORY = 43;
+    private static final float SENSITIVITY = 1.5f;
+    // Caps detection at 240 beats per minute
+    private static final long MIN_INTERVAL_NANOS = 250_000_000L;
+    // Flux below this is silence or noise and never a beat
+    private static final float MIN_FLUX = 1e-3f;
+
+    private final float[] previous;
+    private final float[] history = new float[HISTORY];
+    private int count = 0;
+    private int index = 0;
+    private boolean primed = false;
+    private long lastBeatNanos;
+    private boolean hasBeat = false;
+    private float strength;
+
+    BeatDetector(int numBands) {
+        previous = new float[numBands];
+    }
+
+    /**
+     * @return true if this frame starts a beat
+     */
+    boolean process(float[] bands, long timestampNanos) {
+        float flux = 0;
+        for (int i = 0; i < previous.length; i++) {
+            float rise = bands[i] - previous[i];
+            if (rise > 0) flux += rise;
+            previous[i] = bands[i];
+        }
+        if (!primed) {
+            // The first frame rises from nothing
+            primed = true;
+            strength = 0;
+            return false;
+        }
+
+        float mean = 0;
+        for (int i = 0; i < count; i++) {
+            mean += history[i];
+        }
+        mean = count > 0 ? mean / count : 0;
+        float variance = 0;
+        for (int i = 0; i < count; i++) {
+            float d = history[i] - mean;
+            variance += d * d;
+        }
+        float threshold = mean + SENSITIVITY * (float) Math.sqrt(count > 0 ? variance / count : 0);
+
+        boolean beat = count >= HISTORY / 2
+                && flux > MIN_FLUX
+                && flux > threshold
+                && (!hasBeat || timestampNanos - lastBeatNanos >= MIN_INTERVAL_NANOS);
+        history[index] = flux;
+        index = (index + 1) % HISTORY;
+        if (count < HISTORY) count++;
+
+        if (beat) {
+            hasBeat = true;
+            lastBeatNanos = timestampNanos;
+            strength = threshold > 0 ? flux / threshold : 1;
+        } else {
+            strength = 0;
+        }
+        return beat;
+    }
+
+    /** How far the last beat's flux cleared the threshold, or 0 if the last frame was not a beat. */
+    float strength() {
+        return strength;
+    }
+
+    void reset() {
+        count = 0;
+        index = 0;
+        primed = false;
+        hasBeat = false;
+        strength = 0;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.soniccanvas;
+
+import android.content.Context;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioRecord;
+import android.util.Log;
+
+/**
+ * Capture parameters negotiated with the device's audio path.
+ *
+ * Queries the native sample rate and frames-per-buffer so the platform
+ * does not have to resample before we get the data, and picks float PCM
+ * when the device supports it.
+ */
+public final class CaptureConfig {
+    private static final String TAG = "SonicCanvas";
+    private static final int FALLBACK_SAMPLE_RATE = 44100;
+    private static final int FALLBACK_FRAMES_PER_BUFFER = 256;
+    private static final int CHANNEL_CONFIG = AudioFormat.CHANNEL_IN_MONO;
+
+    public final int sampleRate;
+    public final int framesPerBuffer;
+    public final int encoding;
+    // Frames handed to the pipeline per read, a whole number of HAL bursts
+    public final int readFrames;
+    public final int bufferSizeInBytes;
+
+    private CaptureConfig(int sampleRate, int framesPerBuffer, int encoding, int readFrames, int bufferSizeInBytes) {
+        this.sampleRate = sampleRate;
+        this.framesPerBuffer = framesPerBuffer;
+        this.encoding = encoding;
+        this.readFrames = readFrames;
+        this.bufferSizeInBytes = bufferSizeInBytes;
+    }
+
+    public static CaptureConfig query(Context context, boolean preferFloat, long intervalMs) {
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        int sampleRate = parseProperty(audioManager, AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE, FALLBACK_SAMPLE_RATE);
+        int framesPerBuffer = parseProperty(audioManager, AudioManager.PROPERTY_OUTPUT_FRAMES_PER_BUFFER, FALLBACK_FRAMES_PER_BUFFER);
+
+        int encoding = AudioFormat.ENCODING_PCM_16BIT;
+        int minBufferSize = AudioRecord.ERROR_BAD_VALUE;
+        if (preferFloat) {
+            minBufferSize = AudioRecord.getMinBufferSize(sampleRate, CHANNEL_CONFIG, AudioFormat.ENCODING_PCM_FLOAT);
+            if (minBufferSize > 0) {
+                encoding = AudioFormat.ENCODING_PCM_FLOAT;
+            }
+        }
+        if (minBufferSize <= 0) {
+            minBufferSize = AudioRecord.getMinBufferSize(sampleRate, CHANNEL_CONFIG, AudioFormat.ENCODING_PCM_16BIT);
+        }
+        if (minBufferSize <= 0) {
+            // Native rate rejected, fall back to the rate every device must support
+            sampleRate = FALLBACK_SAMPLE_RATE;
+            minBufferSize = AudioRecord.getMinBufferSize(sampleRate, CHANNEL_CONFIG, AudioFormat.ENCODING_PCM_16BIT);
+        }
+
+        // Read roughly one visualization interval at a time, rounded up to whole bursts
+        int intervalFrames = (int) (sampleRate * intervalMs / 1000);
+        int bursts = Math.max(1, (intervalFrames + framesPerBuffer - 1) / framesPerBuffer);
+        int readFrames = bursts * framesPerBuffer;
+
+        int bytesPerFrame = encoding == AudioFormat.ENCODING_PCM_FLOAT ? 4 : 2;
+        int bufferSizeInBytes = Math.max(minBufferSize, readFrames * bytesPerFrame * 2);
+
+        Log.d(TAG, "Capture config: " + sampleRate + " Hz, " + framesPerBuffer + " frames/buffer, "
+                + (encoding == AudioFormat.ENCODING_PCM_FLOAT ? "float" : "16-bit") + ", read " + readFrames + " frames");
+        return new CaptureConfig(sampleRate, framesPerBuffer, encoding, readFrames, bufferSizeInBytes);
+    }
+
+    private static int parseProperty(AudioManager audioManager, String key, int fallback) {
+        String value = audioManager != null ? audioManager.getProperty(key) : null;
+        if (value == null) return fallback;
+        try {
+            int parsed = Integer.parseInt(value);
+            return parsed > 0 ? parsed : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    public boolean isFloat() {
+        return encoding == AudioFormat.ENCODING_PCM_FLOAT;
+    }
+
+    public int bytesPerFrame() {
+        return isFloat() ? 4 : 2;
+    }
+
+    /**
+     * Builds a recorder for this configuration. Callers must already hold RECORD_AUDIO.
+     *
+     * @throws UnsupportedOperationException if the device rejects the format
+     */
+    @SuppressWarnings("MissingPermission")
+    public AudioRecord buildRecorder(int audioSource) {
+        AudioFormat format = new AudioFormat.Builder()
+                .setEncoding(encoding)
+                .setSampleRate(sampleRate)
+                .setChannelMask(CHANNEL_CONFIG)
+                .build();
+        return new AudioRecord.Builder()
+                .setAudioSource(audioSource)
+                .setAudioFormat(format)
+                .setBufferSizeInBytes(bufferSizeInBytes)
+                .build();
+    }
+}
@@ -0,0 +1,671 @@
+package com.example.soniccanvas;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.media.audiofx.Visualizer;
+import android.util.Log;
+import androidx.core.content.ContextCompat;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Owns the microphone AudioRecord and the output-mix Visualizer.
+ *
+ * Every start/stop/switch/error transition runs on a single control thread,
+ * so callers never block and the mic reader thread is never asked to join
+ * itself. The inactive source is kept prepared (recorder built but stopped,
+ * Visualizer created but disabled) so switching sources only flips which
+ * one is running.
+ */
+public class CaptureController {
+    private static final String TAG = "SonicCanvas";
+    private static final int CAPTURE_POOL_SIZE = 4;
+    // Heap frames rotate so a listener can hand one to another thread while the next is filled
+    private static final int HEAP_BUFFER_COUNT = 3;
+
+    public static final long VISUALIZATION_INTERVAL = 16;
+
+    public enum Source { MICROPHONE, DEVICE_AUDIO }
+
+    public enum State { IDLE, STARTING, RUNNING, STOPPING, ERROR }
+
+    /**
+     * Capture callbacks. Audio arrives on the mic reader thread or the
+     * Visualizer callback thread; state and errors on the control thread.
+     * {@code magnitude} is the frame's mean absolute amplitude, 0..1, with no
+     * display gain applied.
+     */
+    public interface Listener {
+        /** {@code data} is reused, but not before two further frames have been delivered. */
+        void onAudioData(float magnitude, float[] data, int size, int sampleRate);
+
+        /** Zero-copy frame, retained once for this listener; the listener must release it. */
+        void onAudioBuffer(float magnitude, AudioBuffer buffer, int sampleRate);
+
+        /**
+         * The same mic frame as the following onAudioData, as read from a
+         * 16-bit recorder before conversion. Only called for 16-bit capture;
+         * {@code data} is only valid during the call.
+         */
+        default void onPcm16(short[] data, int size, int sampleRate) {
+        }
+
+        void onStateChanged(State state, Source source);
+
+        void onError(Source source, String message);
+    }
+
+    private final Context context;
+    // Copy-on-write so the audio threads can iterate without allocating
+    private volatile Listener[] listeners = new Listener[0];
+    private final ExecutorService control = Executors.newSingleThreadExecutor(r -> new Thread(r, "CaptureControl"));
+
+    // Only touched on the control thread
+    private CaptureConfig captureConfig;
+    private boolean preferFloatCapture = true;
+    private boolean zeroCopyCapture = false;
+    private AudioRecord audioRecord;
+    private Visualizer visualizer;
+    private Thread recordingThread;
+    private AudioBufferPool capturePool;
+
+    private volatile State state = State.IDLE;
+    private volatile Source source = Source.MICROPHONE;
+    private volatile boolean microphoneAllowed = true;
+    private volatile boolean micActive = false;
+    private volatile boolean deviceActive = false;
+    private volatile long switchStartNanos = 0;
+    private volatile long lastSwitchLatencyNanos = -1;
+
+    private final float[][] deviceAudioData = new float[HEAP_BUFFER_COUNT][];
+    private int deviceAudioIndex = 0;
+
+    public CaptureController(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /** Attaches to the running stream; the listener is told the current state straight away. */
+    public void addListener(Listener listener) {
+        synchronized (this) {
+            Listener[] current = listeners;
+            Listener[] updated = new Listener[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = listener;
+            listeners = updated;
+        }
+        control.execute(() -> listener.onStateChanged(state, source));
+    }
+
+    public synchronized void removeListener(Listener listener) {
+        Listener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                Listener[] updated = new Listener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                listeners = updated;
+                return;
+            }
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public boolean isRunning() {
+        return state == State.RUNNING || state == State.STARTING;
+    }
+
+    /** Time from the last source switch request to the first frame from the new source, or -1. */
+    public long getLastSwitchLatencyNanos() {
+        return lastSwitchLatencyNanos;
+    }
+
+    /** When false the mic is never opened: no warm standby and no fallback from device audio. */
+    public void setMicrophoneAllowed(boolean allowed) {
+        microphoneAllowed = allowed;
+    }
+
+    public void start() {
+        control.execute(this::doStart);
+    }
+
+    public void stop() {
+        control.execute(this::doStop);
+    }
+
+    public void setSource(Source newSource) {
+        control.execute(() -> doSetSource(newSource));
+    }
+
+    /**
+     * Float PCM by default; 16-bit lets a fixed-point consumer take the
+     * recorder's shorts from onPcm16 unconverted. The mic recorder is rebuilt
+     * in the new format, and restarted if it was running.
+     */
+    public void setPreferFloatCapture(boolean preferFloat) {
+        control.execute(() -> doSetPreferFloatCapture(preferFloat));
+    }
+
+    /**
+     * Opt-in: the mic is read straight into pooled direct buffers, delivered
+     * through onAudioBuffer, instead of heap arrays. A running reader is
+     * restarted in the new mode; the recorder itself is kept.
+     */
+    public void setZeroCopyCapture(boolean zeroCopy) {
+        control.execute(() -> doSetZeroCopyCapture(zeroCopy));
+    }
+
+    /** Stops capture, frees both sources and shuts the control thread down. */
+    public void release() {
+        control.execute(() -> {
+            doStop();
+            releaseMicrophone();
+            releaseDeviceAudio();
+        });
+        control.shutdown();
+    }
+
+    private void setState(State newState) {
+        state = newState;
+        for (Listener listener : listeners) {
+            listener.onStateChanged(newState, source);
+        }
+    }
+
+    private void notifyError(Source which, String message) {
+        for (Listener listener : listeners) {
+            listener.onError(which, message);
+        }
+    }
+
+    private void notifyAudioData(float magnitude, float[] data, int size, int sampleRate) {
+        for (Listener listener : listeners) {
+            listener.onAudioData(magnitude, data, size, sampleRate);
+        }
+    }
+
+    private void notifyPcm16(short[] data, int size, int sampleRate) {
+        for (Listener listener : listeners) {
+            listener.onPcm16(data, size, sampleRate);
+        }
+    }
+
+    // Each listener gets its own reference to the buffer
+    private void notifyAudioBuffer(float magnitude, AudioBuffer buffer, int sampleRate) {
+        for (Listener listener : listeners) {
+            buffer.retain();
+            listener.onAudioBuffer(magnitude, buffer, sampleRate);
+        }
+    }
+
+    private void doStart() {
+        if (state == State.RUNNING) return;
+        setState(State.STARTING);
+
+        boolean started = startSource(source);
+        if (!started && source == Source.DEVICE_AUDIO && microphoneAllowed) {
+            notifyError(Source.DEVICE_AUDIO, "Error setting up device audio capture. Falling back to microphone.");
+            source = Source.MICROPHONE;
+            started = startSource(source);
+        }
+
+        if (!started) {
+            setState(State.ERROR);
+            return;
+        }
+        setState(State.RUNNING);
+        prepareSource(source == Source.MICROPHONE ? Source.DEVICE_AUDIO : Source.MICROPHONE);
+    }
+
+    private void doStop() {
+        if (state == State.IDLE) return;
+        setState(State.STOPPING);
+        stopMicrophone();
+        stopDeviceAudio();
+        setState(State.IDLE);
+    }
+
+    private void doSetSource(Source newSource) {
+        if (newSource == source) return;
+
+        if (state != State.RUNNING) {
+            source = newSource;
+            prepareSource(newSource);
+            return;
+        }
+
+        switchStartNanos = System.nanoTime();
+        if (source == Source.MICROPHONE) {
+            stopMicrophone();
+        } else {
+            stopDeviceAudio();
+        }
+        source = newSource;
+        doStartAfterSwitch();
+    }
+
+    private void doSetPreferFloatCapture(boolean preferFloat) {
+        if (preferFloat == preferFloatCapture) return;
+        preferFloatCapture = preferFloat;
+        captureConfig = null;
+        boolean wasRecording = micActive;
+        boolean wasPrepared = audioRecord != null;
+        releaseMicrophone();
+        if (wasRecording) {
+            if (!startMicrophone()) setState(State.ERROR);
+        } else if (wasPrepared) {
+            prepareMicrophone();
+        }
+    }
+
+    private void doSetZeroCopyCapture(boolean zeroCopy) {
+        if (zeroCopy == zeroCopyCapture) return;
+        zeroCopyCapture = zeroCopy;
+        if (zeroCopy && captureConfig != null) {
+            preparePool(captureConfig);
+        } else if (!zeroCopy) {
+            // Buffers still held downstream are released to a pool nobody reads from
+            capturePool = null;
+        }
+        if (micActive) {
+            stopMicrophone();
+            if (!startMicrophone()) setState(State.ERROR);
+        }
+    }
+
+    private void doStartAfterSwitch() {
+        boolean started = startSource(source);
+        if (!started && source == Source.DEVICE_AUDIO && microphoneAllowed) {
+            notifyError(Source.DEVICE_AUDIO, "Error setting up device audio capture. Falling back to microphone.");
+            source = Source.MICROPHONE;
+            started = startSource(source);
+        }
+        setState(started ? State.RUNNING : State.ERROR);
+    }
+
+    private boolean startSource(Source which) {
+        return which == Source.MICROPHONE ? startMicrophone() : startDeviceAudio();
+    }
+
+    // Builds the source without starting it, so a later switch is instant
+    private void prepareSource(Source which) {
+        if (which == Source.MICROPHONE) {
+            prepareMicrophone();
+        } else {
+            prepareDeviceAudio();
+        }
+    }
+
+    private boolean hasPermission(String permission) {
+        return ContextCompat.checkSelfPermission(context, permission) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    // The per-source steps below are package-private so tests can stand in for the platform sources
+    boolean prepareMicrophone() {
+        if (audioRecord != null) return true;
+        if (!microphoneAllowed || !hasPermission(Manifest.permission.RECORD_AUDIO)) {
+            return false;
+        }
+
+        try {
+            if (captureConfig == null) {
+                captureConfig = CaptureConfig.query(context, preferFloatCapture, VISUALIZATION_INTERVAL);
+            }
+            audioRecord = captureConfig.buildRecorder(MediaRecorder.AudioSource.MIC);
+            if (zeroCopyCapture) {
+                preparePool(captureConfig);
+            }
+
+            if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+                Log.e(TAG, "AudioRecord not initialized");
+                audioRecord.release();
+                audioRecord = null;
+                return false;
+            }
+            Log.d(TAG, "Microphone recording prepared");
+            return true;
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            Log.e(TAG, "Error initializing AudioRecord: " + e.getMessage());
+            audioRecord = null;
+            return false;
+        }
+    }
+
+    boolean startMicrophone() {
+        if (!hasPermission(Manifest.permission.RECORD_AUDIO)) {
+            notifyError(Source.MICROPHONE, "Microphone permission required");
+            return false;
+        }
+        if (!prepareMicrophone()) {
+            notifyError(Source.MICROPHONE, "AudioRecord failed to initialize.");
+            return false;
+        }
+
+        try {
+            audioRecord.startRecording();
+            micActive = true;
+            // The reader gets its own references; the fields belong to this thread
+            AudioRecord recorder = audioRecord;
+            CaptureConfig config = captureConfig;
+            AudioBufferPool pool = zeroCopyCapture ? capturePool : null;
+            recordingThread = new Thread(() -> processAudioData(recorder, config, pool), "CaptureReader");
+            recordingThread.start();
+            Log.d(TAG, "Microphone recording started");
+            return true;
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Error starting AudioRecord: " + e.getMessage());
+            notifyError(Source.MICROPHONE, "Error starting audio recording.");
+            return false;
+        }
+    }
+
+    // Stops the recorder but keeps it built for the next start
+    void stopMicrophone() {
+        micActive = false;
+        if (audioRecord != null) {
+            try {
+                if (audioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
+                    audioRecord.stop();
+                }
+                Log.d(TAG, "Microphone recording stopped");
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Error stopping recording: " + e.getMessage());
+            }
+        }
+        joinRecordingThread();
+    }
+
+    private void joinRecordingThread() {
+        if (recordingThread == null) return;
+        try {
+            recordingThread.join();
+            Log.d(TAG, "Recording thread stopped");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.e(TAG, "Error stopping recording thread: " + e.getMessage());
+        }
+        recordingThread = null;
+    }
+
+    void releaseMicrophone() {
+        stopMicrophone();
+        if (audioRecord != null) {
+            try {
+                audioRecord.release();
+                Log.d(TAG, "Microphone recording released");
+            } catch (Exception e) {
+                Log.e(TAG, "Error releasing AudioRecord: " + e.getMessage());
+            }
+            audioRecord = null;
+        }
+    }
+
+    boolean prepareDeviceAudio() {
+        if (visualizer != null) return true;
+        if (!hasPermission(Manifest.permission.RECORD_AUDIO)
+                || !hasPermission(Manifest.permission.MODIFY_AUDIO_SETTINGS)) {
+            return false;
+        }
+
+        try {
+            // Create a Visualizer to capture device audio output
+            int captureSize = Visualizer.getCaptureSizeRange()[1]; // Use maximum capture size
+            Log.d(TAG, "Creating visualizer with capture size: " + captureSize);
+
+            visualizer = new Visualizer(0); // 0 = output mix (device audio)
+            visualizer.setEnabled(false);
+            visualizer.setCaptureSize(captureSize);
+            for (int i = 0; i < HEAP_BUFFER_COUNT; i++) {
+                deviceAudioData[i] = new float[captureSize];
+            }
+
+            visualizer.setDataCaptureListener(
+                    new Visualizer.OnDataCaptureListener() {
+                        @Override
+                        public void onWaveFormDataCapture(Visualizer visualizer, byte[] waveform, int samplingRate) {
+                            if (!deviceActive) return;
+                            onDeviceWaveform(waveform, samplingRate / 1000); // Reported in milliHertz
+                        }
+
+                        @Override
+                        public void onFftDataCapture(Visualizer visualizer, byte[] fft, int samplingRate) {
+                            // We're not using FFT data in this implementation
+                        }
+                    },
+                    Visualizer.getMaxCaptureRate(), // Maximum capture rate for smooth visualization
+                    true, // Capture waveform
+                    false // Don't capture FFT
+            );
+            Log.d(TAG, "Device audio capture prepared");
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error creating Visualizer: " + e.getMessage(), e);
+            releaseDeviceAudio();
+            return false;
+        }
+    }
+
+    boolean startDeviceAudio() {
+        if (!prepareDeviceAudio()) {
+            return false;
+        }
+
+        try {
+            deviceActive = true;
+            visualizer.setEnabled(true);
+            Log.d(TAG, "Device audio capture started");
+            return true;
+        } catch (IllegalStateException e) {
+            deviceActive = false;
+            Log.e(TAG, "Error enabling Visualizer: " + e.getMessage());
+            return false;
+        }
+    }
+
+    void stopDeviceAudio() {
+        deviceActive = false;
+        if (visualizer != null) {
+            try {
+                visualizer.setEnabled(false);
+                Log.d(TAG, "Device audio capture stopped");
+            } catch (Exception e) {
+                Log.e(TAG, "Error disabling Visualizer: " + e.getMessage());
+            }
+        }
+    }
+
+    void releaseDeviceAudio() {
+        deviceActive = false;
+        if (visualizer != null) {
+            try {
+                visualizer.setEnabled(false);
+                visualizer.release();
+                Log.d(TAG, "Device audio visualizer released");
+            } catch (Exception e) {
+                Log.e(TAG, "Error releasing Visualizer: " + e.getMessage());
+            }
+            visualizer = null;
+        }
+    }
+
+    private void onDeviceWaveform(byte[] waveform, int sampleRate) {
+        long start = System.nanoTime();
+        float[] data = deviceAudioData[deviceAudioIndex];
+        deviceAudioIndex = (deviceAudioIndex + 1) % HEAP_BUFFER_COUNT;
+        int size = Math.min(waveform.length, data.length);
+        convertWaveform(waveform, data, size);
+
+        markFirstFrame();
+        float magnitude = calculateMagnitude(data, size);
+        notifyAudioData(magnitude, data, size, sampleRate);
+        PerfTrace.record(PerfTrace.STAGE_DEVICE_CAPTURE, start, size, 0);
+    }
+
+    // Pooled buffers match the recorder's format; kept across restarts while it does not change
+    private void preparePool(CaptureConfig config) {
+        AudioBufferPool pool = capturePool;
+        if (pool == null || pool.frames() != config.readFrames || pool.isFloat() != config.isFloat()) {
+            capturePool = new AudioBufferPool(CAPTURE_POOL_SIZE, config.readFrames, config.isFloat());
+        }
+    }
+
+    // Called from the reader thread, zero-copy when given a pool; errors are handed back to the control thread
+    private void processAudioData(AudioRecord recorder, CaptureConfig config, AudioBufferPool pool) {
+        if (pool != null) {
+            processAudioDataZeroCopy(recorder, config, pool);
+            return;
+        }
+
+        boolean floatCapture = config.isFloat();
+        int readFrames = config.readFrames;
+        int sampleRate = config.sampleRate;
+        float[][] buffers = new float[HEAP_BUFFER_COUNT][readFrames];
+        short[] pcm16 = floatCapture ? null : new short[readFrames];
+        int bufferIndex = 0;
+
+        while (micActive) {
+            float[] buffer = buffers[bufferIndex];
+            int readResult;
+            try {
+                // Reads are sized to one visualization interval, so the blocking read paces the loop
+                if (floatCapture) {
+                    readResult = recorder.read(buffer, 0, readFrames, AudioRecord.READ_BLOCKING);
+                } else {
+                    readResult = recorder.read(pcm16, 0, readFrames);
+                    for (int i = 0; i < readResult; i++) {
+                        buffer[i] = pcm16[i] / 32768f;
+                    }
+                }
+            } catch (IllegalStateException e) {
+                reportReadError("Error reading audio data: " + e.getMessage());
+                return;
+            }
+
+            if (readResult > 0) {
+                long start = System.nanoTime();
+                markFirstFrame();
+                if (!floatCapture) {
+                    notifyPcm16(pcm16, readResult, sampleRate);
+                }
+                float magnitude = calculateMagnitude(buffer, readResult);
+                notifyAudioData(magnitude, buffer, readResult, sampleRate);
+                bufferIndex = (bufferIndex + 1) % HEAP_BUFFER_COUNT;
+                PerfTrace.record(PerfTrace.STAGE_MIC_READ, start, readResult, 0);
+            } else if (readResult < 0) {
+                reportReadError("Error reading audio data, readResult: " + readResult);
+                return;
+            }
+        }
+    }
+
+    private void processAudioDataZeroCopy(AudioRecord recorder, CaptureConfig config, AudioBufferPool pool) {
+        int readFrames = config.readFrames;
+        boolean floatCapture = config.isFloat();
+        int sampleRate = config.sampleRate;
+        // Drained into when every pooled buffer is still held downstream
+        AudioBuffer overflow = new AudioBufferPool(1, readFrames, floatCapture).acquire();
+        int droppedReads = 0;
+
+        while (micActive) {
+            AudioBuffer buffer = pool.acquire();
+            boolean dropped = buffer == null;
+            if (dropped) {
+                buffer = overflow;
+            }
+
+            int readResult;
+            try {
+                buffer.bytes().clear();
+                readResult = recorder.read(buffer.bytes(), buffer.capacityInBytes(), AudioRecord.READ_BLOCKING);
+            } catch (IllegalStateException e) {
+                if (!dropped) buffer.release();
+                reportReadError("Error reading audio data: " + e.getMessage());
+                return;
+            }
+
+            if (readResult < 0) {
+                if (!dropped) buffer.release();
+                reportReadError("Error reading audio data, readResult: " + readResult);
+                return;
+            }
+            if (dropped || readResult == 0) {
+                if (dropped) {
+                    droppedReads++;
+                } else {
+                    buffer.release();
+                }
+                continue;
+            }
+
+            long start = System.nanoTime();
+            buffer.setSizeInBytes(readResult);
+            markFirstFrame();
+            float magnitude = calculateMagnitude(buffer);
+            // Listeners take their own references; ours is dropped once the frame is handed off
+            notifyAudioBuffer(magnitude, buffer, sampleRate);
+            int frames = buffer.size();
+            buffer.release();
+            PerfTrace.record(PerfTrace.STAGE_MIC_READ, start, frames, droppedReads);
+            droppedReads = 0;
+        }
+    }
+
+    private void reportReadError(String message) {
+        Log.e(TAG, message);
+        // A stop already in flight makes the read fail; that is not an error
+        if (!micActive) return;
+        micActive = false;
+        control.execute(() -> {
+            if (source != Source.MICROPHONE || state != State.RUNNING) return;
+            // The recorder is unusable after a read error, rebuild it on the next start
+            releaseMicrophone();
+            setState(State.ERROR);
+            notifyError(Source.MICROPHONE, "Error reading audio data.");
+        });
+    }
+
+    // Called by a source once its first frame after a switch is delivered
+    void markFirstFrame() {
+        long start = switchStartNanos;
+        if (start != 0) {
+            switchStartNanos = 0;
+            lastSwitchLatencyNanos = System.nanoTime() - start;
+            Log.d(TAG, "Source switch latency: " + (lastSwitchLatencyNanos / 1000) + " us");
+        }
+    }
+
+    // Waveform bytes are unsigned 8-bit centred on 128
+    static void convertWaveform(byte[] waveform, float[] out, int size) {
+        for (int i = 0; i < size; i++) {
+            out[i] = ((waveform[i] & 0xFF) - 128) / 128f;
+        }
+    }
+
+    static float calculateMagnitude(AudioBuffer buffer) {
+        float sum = 0;
+        int size = buffer.size();
+        for (int i = 0; i < size; i++) {
+            sum += Math.abs(buffer.sample(i));
+        }
+        return sum / size;
+    }
+
+    // Mean absolute amplitude, 0..1
+    static float calculateMagnitude(float[] buffer, int readResult) {
+        float sum = 0;
+        for (int i = 0; i < readResult; i++) {
+            sum += Math.abs(buffer[i]);
+        }
+        return sum / readResult;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.soniccanvas;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import androidx.lifecycle.AndroidViewModel;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Keeps the capture pipeline alive across configuration changes.
+ *
+ * The activity only attaches and detaches its listener, so rotating the
+ * device neither stops the recorder nor leaves a gap in the audio. Capture
+ * is released once the activity is finished for good.
+ */
+public class CaptureViewModel extends AndroidViewModel {
+    static final String PREF_FIXED_POINT_DSP = "fixed_point_dsp";
+    static final String PREF_SPECTRUM_WINDOW = "spectrum_window";
+    static final String PREF_SPECTRUM_OVERLAP = "spectrum_overlap";
+    static final String PREF_STREAM_FRAMES = "stream_frames";
+    static final String PREF_ZERO_COPY_CAPTURE = "zero_copy_capture";
+    static final String PERF_TRACE_DIRECTORY = "perf-trace";
+    private static final String TAG = "SonicCanvas";
+
+    private final CaptureController captureController;
+    // Listens on the capture thread so pitch follows the capture hop rate
+    private final PitchTracker pitchTracker = new PitchTracker();
+    private final SpectrumTracker spectrumTracker = new SpectrumTracker(BarsRenderer.DEFAULT_BARS);
+    private final FrameStreamer frameStreamer = new FrameStreamer(FrameStreamer.DEFAULT_PORT, FrameAnalyzer.NUM_BANDS);
+    private int visualizerType = VisualizerRenderer.WAVEFORM_TYPE;
+    private boolean zeroCopyCapture;
+
+    public CaptureViewModel(Application application) {
+        super(application);
+        PerfTrace.install(new File(application.getFilesDir(), PERF_TRACE_DIRECTORY));
+        captureController = new CaptureController(application);
+        captureController.addListener(pitchTracker);
+        captureController.addListener(spectrumTracker);
+
+        SharedPreferences prefs = preferences();
+        applyFixedPoint(prefs.getBoolean(PREF_FIXED_POINT_DSP, false));
+        zeroCopyCapture = prefs.getBoolean(PREF_ZERO_COPY_CAPTURE, false);
+        captureController.setZeroCopyCapture(zeroCopyCapture);
+        spectrumTracker.setWindow(enumPreference(prefs, PREF_SPECTRUM_WINDOW, WindowFunction.HANN));
+        spectrumTracker.setOverlap(enumPreference(prefs, PREF_SPECTRUM_OVERLAP, SlidingStft.Overlap.HALF));
+        if (prefs.getBoolean(PREF_STREAM_FRAMES, false)) {
+            startStreaming();
+        }
+    }
+
+    // Stored by name; anything unrecognised from an older build falls back to the default
+    private static <E extends Enum<E>> E enumPreference(SharedPreferences prefs, String key, E fallback) {
+        String name = prefs.getString(key, null);
+        if (name == null) return fallback;
+        try {
+            return Enum.valueOf(fallback.getDeclaringClass(), name);
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+
+    private SharedPreferences preferences() {
+        return getApplication().getSharedPreferences(SonicWallpaperService.PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public CaptureController getCaptureController() {
+        return captureController;
+    }
+
+    public PitchTracker getPitchTracker() {
+        return pitchTracker;
+    }
+
+    public SpectrumTracker getSpectrumTracker() {
+        return spectrumTracker;
+    }
+
+    public boolean isFixedPointDsp() {
+        return spectrumTracker.isFixedPoint();
+    }
+
+    /** Switches the spectrum engine and the capture format with it, and remembers the choice. */
+    public void setFixedPointDsp(boolean fixedPoint) {
+        applyFixedPoint(fixedPoint);
+        preferences().edit().putBoolean(PREF_FIXED_POINT_DSP, fixedPoint).apply();
+    }
+
+    // The Q15 engine reads the recorder's shorts directly, so it asks for 16-bit capture
+    private void applyFixedPoint(boolean fixedPoint) {
+        spectrumTracker.setFixedPoint(fixedPoint);
+        captureController.setPreferFloatCapture(!fixedPoint);
+    }
+
+    public boolean isZeroCopyCapture() {
+        return zeroCopyCapture;
+    }
+
+    /** Switches the mic between heap frames and pooled direct buffers, and remembers the choice. */
+    public void setZeroCopyCapture(boolean zeroCopy) {
+        zeroCopyCapture = zeroCopy;
+        captureController.setZeroCopyCapture(zeroCopy);
+        preferences().edit().putBoolean(PREF_ZERO_COPY_CAPTURE, zeroCopy).apply();
+    }
+
+    public WindowFunction getSpectrumWindow() {
+        return spectrumTracker.getWindow();
+    }
+
+    public void setSpectrumWindow(WindowFunction window) {
+        spectrumTracker.setWindow(window);
+        preferences().edit().putString(PREF_SPECTRUM_WINDOW, window.name()).apply();
+    }
+
+    public SlidingStft.Overlap getSpectrumOverlap() {
+        return spectrumTracker.getOverlap();
+    }
+
+    public void setSpectrumOverlap(SlidingStft.Overlap overlap) {
+        spectrumTracker.setOverlap(overlap);
+        preferences().edit().putString(PREF_SPECTRUM_OVERLAP, overlap.name()).apply();
+    }
+
+    public FrameStreamer getFrameStreamer() {
+        return frameStreamer;
+    }
+
+    public boolean isStreamingFrames() {
+        return frameStreamer.isRunning();
+    }
+
+    /**
+     * Starts or stops streaming analysis frames to external displays, and
+     * remembers the choice.
+     *
+     * @return false if the socket could not be opened
+     */
+    public boolean setStreamingFrames(boolean enabled) {
+        preferences().edit().putBoolean(PREF_STREAM_FRAMES, enabled).apply();
+        if (!enabled) {
+            frameStreamer.stop();
+            return true;
+        }
+        return startStreaming();
+    }
+
+    private boolean startStreaming() {
+        try {
+            frameStreamer.start();
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot stream frames on port " + FrameStreamer.DEFAULT_PORT + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    public int getVisualizerType() {
+        return visualizerType;
+    }
+
+    public void setVisualizerType(int visualizerType) {
+        this.visualizerType = visualizerType;
+        // Capture-thread analysis only runs while its mode is showing
+        pitchTracker.setEnabled(visualizerType == VisualizerRenderer.TUNER_TYPE);
+        spectrumTracker.setEnabled(visualizerType == VisualizerRenderer.BARS_TYPE
+                || visualizerType == VisualizerRenderer.SPLIT_TYPE);
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        captureController.removeListener(pitchTracker);
+        captureController.removeListener(spectrumTracker);
+        captureController.release();
+        frameStreamer.stop();
+        // Capture is over; get the tail of the trace onto disk while the process is still alive
+        PerfTrace.installed().requestFlush();
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.soniccanvas;
+
+/**
+ * Cached geometry for the circular visualization: unit-circle vectors and
+ * the point-to-sample index map. Per frame only the radial offsets are
+ * computed and scaled onto the cached vectors.
+ */
+final class CircleGeometry {
+    private final int numPoints;
+    private final float[] unitX;
+    private final float[] unitY;
+    private final int[] sampleIndex;
+    private int mappedSize = -1;
+    private float centerX;
+    private float centerY;
+    private float baseRadius;
+
+    CircleGeometry(int numPoints) {
+        this.numPoints = numPoints;
+        unitX = new float[numPoints];
+        unitY = new float[numPoints];
+        sampleIndex = new int[numPoints];
+        double angleIncrement = 2 * Math.PI / numPoints;
+        for (int i = 0; i < numPoints; i++) {
+            unitX[i] = (float) Math.cos(i * angleIncrement);
+            unitY[i] = (float) Math.sin(i * angleIncrement);
+        }
+    }
+
+    int numPoints() {
+        return numPoints;
+    }
+
+    float centerX() {
+        return centerX;
+    }
+
+    float centerY() {
+        return centerY;
+    }
+
+    float baseRadius() {
+        return baseRadius;
+    }
+
+    void setSize(int width, int height) {
+        centerX = width / 2f;
+        centerY = height / 2f;
+        baseRadius = Math.min(centerX, centerY) * 0.6f;
+    }
+
+    private void mapSamples(int dataSize) {
+        if (dataSize == mappedSize) return;
+        for (int i = 0; i < numPoints; i++) {
+            sampleIndex[i] = (int) ((long) i * dataSize / numPoints) % dataSize;
+        }
+        mappedSize = dataSize;
+    }
+
+    /** Writes each point's radial offset in pixels into {@code outOffsets}. */
+    void computeOffsets(SampleSource samples, float sensitivity, float maxAmplitude, float[] outOffsets) {
+        mapSamples(samples.size());
+        float radiusScale = baseRadius * 0.5f;
+        for (int i = 0; i < numPoints; i++) {
+            // Apply sensitivity multiplier and limit amplitude
+            float amplitude = Math.min(Math.abs(samples.sample(sampleIndex[i])) * sensitivity, maxAmplitude);
+            outOffsets[i] = amplitude * radiusScale;
+        }
+    }
+
+    /**
+     * Writes x,y pairs for every point into {@code outXY}, which must hold
+     * 2 * numPoints floats.
+     */
+    void project(float[] offsets, float[] outXY) {
+        for (int i = 0; i < numPoints; i++) {
+            // Add some base radius so it's never zero
+            float radius = baseRadius + offsets[i];
+            outXY[2 * i] = centerX + radius * unitX[i];
+            outXY[2 * i + 1] = centerY + radius * unitY[i];
+        }
+    }
+}
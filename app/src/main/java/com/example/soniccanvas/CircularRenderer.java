@@ -0,0 +1,80 @@
+package com.example.soniccanvas;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+public class CircularRenderer implements Renderer {
+    public static final int DEFAULT_POINTS = 180;
+    private static final float MAX_AMPLITUDE = 0.8f;
+    private static final float ATTACK_MS = 15f;
+    private static final float RELEASE_MS = 120f;
+
+    private final Paint paint;
+    private final Path path = new Path();
+    private final CircleGeometry geometry;
+    private final BandSmoother smoother;
+    private final float[] offsets;
+    private final float[] points;
+    private boolean hasFrame = false;
+
+    public CircularRenderer(int color) {
+        this(color, DEFAULT_POINTS);
+    }
+
+    public CircularRenderer(int color, int numPoints) {
+        paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(color);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+        geometry = new CircleGeometry(numPoints);
+        smoother = new BandSmoother(numPoints, ATTACK_MS, RELEASE_MS);
+        offsets = new float[numPoints];
+        points = new float[numPoints * 2];
+    }
+
+    @Override
+    public void setSize(int width, int height) {
+        geometry.setSize(width, height);
+    }
+
+    @Override
+    public void onFrame(AnalysisFrame frame) {
+        if (frame.size() == 0) return;
+        geometry.computeOffsets(frame, frame.gain(), MAX_AMPLITUDE, offsets);
+        smoother.setTargets(offsets);
+        hasFrame = true;
+    }
+
+    @Override
+    public void clear() {
+        smoother.reset();
+        hasFrame = false;
+    }
+
+    @Override
+    public boolean draw(Canvas canvas, long frameTimeNanos) {
+        if (!hasFrame) return false;
+
+        boolean animating = smoother.advance(frameTimeNanos);
+        geometry.project(smoother.values(), points);
+
+        path.rewind();
+        path.moveTo(points[0], points[1]);
+        for (int i = 2; i < points.length; i += 2) {
+            path.lineTo(points[i], points[i + 1]);
+        }
+        path.close();
+
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(3f);
+        paint.setAlpha(255);
+        canvas.drawPath(path, paint);
+
+        // Draw inner circle
+        paint.setStyle(Paint.Style.FILL);
+        paint.setAlpha(40);
+        canvas.drawCircle(geometry.centerX(), geometry.centerY(), geometry.baseRadius() * 0.3f, paint);
+        return animating;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.soniccanvas;
+
+import java.util.Arrays;
+
+/**
+ * Constant-Q spectrum with one bin per semitone, using precomputed sparse
+ * spectral kernels (Brown and Puckette).
+ *
+ * Every bin's windowed complex exponential is transformed once when the
+ * kernels are built; only the few FFT coefficients above
+ * SPARSITY_THRESHOLD survive, stored row by row in primitive CSR arrays.
+ * A frame then costs one FFT of the sample history plus a sparse
+ * multiply, and allocates nothing. The history is real, so that FFT runs
+ * at half size on even/odd samples packed as one complex sequence.
+ */
+final class ConstantQTransform {
+    static final int BINS_PER_OCTAVE = 12;
+    // Kernel coefficients smaller than this fraction of their row's peak are dropped
+    private static final float SPARSITY_THRESHOLD = 0.0054f;
+
+    private final int sampleRate;
+    private final float minFrequency;
+    private final int numBins;
+    private final int fftSize;
+    // Full-size work arrays for building kernels, then X[0..N/2] per frame
+    private final float[] re;
+    private final float[] im;
+    private final Fft halfFft;
+    private final float[] packedRe;
+    private final float[] packedIm;
+    private final float[] twiddleRe;
+    private final float[] twiddleIm;
+    private final float[] history;
+    private int writePosition = 0;
+
+    // CSR kernel: row k spans [rowStart[k], rowStart[k + 1]) of the other arrays
+    private final int[] rowStart;
+    private final int[] column;
+    private final float[] kernelRe;
+    private final float[] kernelIm;
+
+    ConstantQTransform(int sampleRate, float minFrequency, int numBins) {
+        float maxFrequency = binFrequency(minFrequency, numBins - 1);
+        if (maxFrequency >= sampleRate / 2f) {
+            throw new IllegalArgumentException("Top bin " + maxFrequency + " Hz is above Nyquist for " + sampleRate + " Hz");
+        }
+        this.sampleRate = sampleRate;
+        this.minFrequency = minFrequency;
+        this.numBins = numBins;
+
+        // The lowest bin has the longest kernel and sets the FFT size
+        double q = 1.0 / (Math.pow(2.0, 1.0 / BINS_PER_OCTAVE) - 1.0);
+        int longest = (int) Math.ceil(q * sampleRate / minFrequency);
+        fftSize = Integer.highestOneBit(longest - 1) << 1;
+        re = new float[fftSize];
+        im = new float[fftSize];
+        history = new float[fftSize];
+        int half = fftSize / 2;
+        halfFft = new Fft(half);
+        packedRe = new float[half];
+        packedIm = new float[half];
+        twiddleRe = new float[half];
+        twiddleIm = new float[half];
+        for (int k = 0; k < half; k++) {
+            double angle = -2 * Math.PI * k / fftSize;
+            twiddleRe[k] = (float) Math.cos(angle);
+            twiddleIm[k] = (float) Math.sin(angle);
+        }
+
+        rowStart = new int[numBins + 1];
+        int capacity = numBins * 64;
+        int[] columns = new int[capacity];
+        float[] valuesRe = new float[capacity];
+        float[] valuesIm = new float[capacity];
+        int count = 0;
+        // Kernels are complex, so they are built with a full-size FFT once
+        Fft fft = new Fft(fftSize);
+        for (int k = 0; k < numBins; k++) {
+            buildTemporalKernel(q, k);
+            fft.forward(re, im);
+
+            float peak = 0;
+            for (int j = 0; j <= half; j++) {
+                peak = Math.max(peak, re[j] * re[j] + im[j] * im[j]);
+            }
+            float cutoff = peak * SPARSITY_THRESHOLD * SPARSITY_THRESHOLD;
+
+            rowStart[k] = count;
+            for (int j = 0; j <= half; j++) {
+                if (re[j] * re[j] + im[j] * im[j] < cutoff) continue;
+                if (count == columns.length) {
+                    columns = Arrays.copyOf(columns, count * 2);
+                    valuesRe = Arrays.copyOf(valuesRe, count * 2);
+                    valuesIm = Arrays.copyOf(valuesIm, count * 2);
+                }
+                // Parseval: <x, t> = (1/N) Σ X·conj(T); the 2 restores a real sine's amplitude
+                columns[count] = j;
+                valuesRe[count] = 2f * re[j] / fftSize;
+                valuesIm[count] = -2f * im[j] / fftSize;
+                count++;
+            }
+        }
+        rowStart[numBins] = count;
+        column = Arrays.copyOf(columns, count);
+        kernelRe = Arrays.copyOf(valuesRe, count);
+        kernelIm = Arrays.copyOf(valuesIm, count);
+        Arrays.fill(re, 0f);
+        Arrays.fill(im, 0f);
+    }
+
+    // Hann-windowed exponential for bin k, normalised to unit gain and
+    // aligned to the newest sample so high bins react without extra latency
+    private void buildTemporalKernel(double q, int k) {
+        Arrays.fill(re, 0f);
+        Arrays.fill(im, 0f);
+        double frequency = binFrequency(minFrequency, k);
+        int length = Math.min(fftSize, (int) Math.ceil(q * sampleRate / frequency));
+        int start = fftSize - length;
+        double windowSum = length / 2.0;
+        for (int n = 0; n < length; n++) {
+            double window = 0.5 - 0.5 * Math.cos(2 * Math.PI * n / length);
+            double phase = 2 * Math.PI * frequency * n / sampleRate;
+            re[start + n] = (float) (window / windowSum * Math.cos(phase));
+            im[start + n] = (float) (window / windowSum * Math.sin(phase));
+        }
+    }
+
+    static float binFrequency(float minFrequency, int bin) {
+        return minFrequency * (float) Math.pow(2.0, (double) bin / BINS_PER_OCTAVE);
+    }
+
+    float binFrequency(int bin) {
+        return binFrequency(minFrequency, bin);
+    }
+
+    int sampleRate() {
+        return sampleRate;
+    }
+
+    int numBins() {
+        return numBins;
+    }
+
+    int fftSize() {
+        return fftSize;
+    }
+
+    /** Stored kernel coefficients across all bins. */
+    int nonZeros() {
+        return column.length;
+    }
+
+    /** Bytes held by the CSR kernel arrays. */
+    long kernelBytes() {
+        return 4L * (rowStart.length + column.length + kernelRe.length + kernelIm.length);
+    }
+
+    /** Appends samples to the history the next transform reads. */
+    void write(SampleSource samples) {
+        int size = samples.size();
+        int mask = fftSize - 1;
+        for (int i = 0; i < size; i++) {
+            history[writePosition] = samples.sample(i);
+            writePosition = (writePosition + 1) & mask;
+        }
+    }
+
+    void write(float[] samples, int offset, int length) {
+        int mask = fftSize - 1;
+        for (int i = 0; i < length; i++) {
+            history[writePosition] = samples[offset + i];
+            writePosition = (writePosition + 1) & mask;
+        }
+    }
+
+    void reset() {
+        Arrays.fill(history, 0f);
+        writePosition = 0;
+    }
+
+    /** Writes the amplitude of every bin for the current history into {@code outMagnitudes}. */
+    void transform(float[] outMagnitudes) {
+        // Oldest sample first, so the newest lines up with the kernels' end
+        int mask = fftSize - 1;
+        int half = fftSize / 2;
+        for (int m = 0; m < half; m++) {
+            int i = writePosition + 2 * m;
+            packedRe[m] = history[i & mask];
+            packedIm[m] = history[(i + 1) & mask];
+        }
+        halfFft.forward(packedRe, packedIm);
+
+        // Split into the even and odd spectra and recombine into X[0..N/2]
+        for (int k = 0; k <= half; k++) {
+            int a = k & (half - 1);
+            int b = (half - k) & (half - 1);
+            float zr = packedRe[a];
+            float zi = packedIm[a];
+            float mr = packedRe[b];
+            float mi = -packedIm[b];
+            float evenRe = 0.5f * (zr + mr);
+            float evenIm = 0.5f * (zi + mi);
+            float oddRe = 0.5f * (zi - mi);
+            float oddIm = -0.5f * (zr - mr);
+            float wr = k < half ? twiddleRe[k] : -1f;
+            float wi = k < half ? twiddleIm[k] : 0f;
+            re[k] = evenRe + wr * oddRe - wi * oddIm;
+            im[k] = evenIm + wr * oddIm + wi * oddRe;
+        }
+
+        for (int k = 0; k < numBins; k++) {
+            float sumRe = 0;
+            float sumIm = 0;
+            for (int j = rowStart[k], end = rowStart[k + 1]; j < end; j++) {
+                int c = column[j];
+                float xr = re[c];
+                float xi = im[c];
+                float kr = kernelRe[j];
+                float ki = kernelIm[j];
+                sumRe += xr * kr - xi * ki;
+                sumIm += xr * ki + xi * kr;
+            }
+            outMagnitudes[k] = (float) Math.sqrt(sumRe * sumRe + sumIm * sumIm);
+        }
+    }
+}
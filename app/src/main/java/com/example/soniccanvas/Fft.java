@@ -0,0 +1,80 @@
+package com.example.soniccanvas;
+
+/**
+ * In-place iterative radix-2 complex FFT.
+ *
+ * Twiddles and the bit-reversal permutation are computed once per size, so
+ * transforms only touch the caller's re/im arrays and allocate nothing.
+ */
+final class Fft {
+    private final int n;
+    private final int[] bitReverse;
+    private final float[] cos;
+    private final float[] sin;
+
+    Fft(int n) {
+        if (n < 2 || (n & (n - 1)) != 0) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + n);
+        }
+        this.n = n;
+        bitReverse = new int[n];
+        int bits = Integer.numberOfTrailingZeros(n);
+        for (int i = 0; i < n; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        cos = new float[n / 2];
+        sin = new float[n / 2];
+        for (int i = 0; i < n / 2; i++) {
+            double angle = -2 * Math.PI * i / n;
+            cos[i] = (float) Math.cos(angle);
+            sin[i] = (float) Math.sin(angle);
+        }
+    }
+
+    int size() {
+        return n;
+    }
+
+    void forward(float[] re, float[] im) {
+        transform(re, im, false);
+    }
+
+    /** Inverse transform without the 1/n scale; callers fold that into their own scaling. */
+    void inverse(float[] re, float[] im) {
+        transform(re, im, true);
+    }
+
+    private void transform(float[] re, float[] im, boolean inverse) {
+        for (int i = 0; i < n; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                float t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        float sign = inverse ? -1f : 1f;
+        for (int size = 2; size <= n; size <<= 1) {
+            int half = size >> 1;
+            int step = n / size;
+            for (int start = 0; start < n; start += size) {
+                for (int k = 0; k < half; k++) {
+                    float wr = cos[k * step];
+                    float wi = sign * sin[k * step];
+                    int a = start + k;
+                    int b = a + half;
+                    float tr = re[b] * wr - im[b] * wi;
+                    float ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
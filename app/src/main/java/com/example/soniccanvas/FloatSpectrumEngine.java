@@ -0,0 +1,68 @@
+package com.example.soniccanvas;
+
+/** Reference engine: float FFT and exact magnitudes. */
+final class FloatSpectrumEngine implements SpectrumEngine {
+    private final int n;
+    private final Fft fft;
+    private WindowFunction windowFunction;
+    private float[] window;
+    // 2 / Σw: a real sine splits its amplitude over ±f
+    private float scale;
+    private final float[] re;
+    private final float[] im;
+
+    FloatSpectrumEngine(int fftSize) {
+        n = fftSize;
+        fft = new Fft(fftSize);
+        re = new float[fftSize];
+        im = new float[fftSize];
+        setWindow(WindowFunction.HANN);
+    }
+
+    @Override
+    public void setWindow(WindowFunction window) {
+        if (window == windowFunction) return;
+        windowFunction = window;
+        this.window = window.table(n);
+        scale = (float) (2 / WindowFunction.sum(this.window));
+    }
+
+    @Override
+    public WindowFunction window() {
+        return windowFunction;
+    }
+
+    @Override
+    public int fftSize() {
+        return n;
+    }
+
+    @Override
+    public void analyze(short[] samples, int offset, BandLayout layout, float[] outBands) {
+        for (int i = 0; i < n; i++) {
+            re[i] = samples[offset + i] / 32768f * window[i];
+            im[i] = 0f;
+        }
+        transform(layout, outBands);
+    }
+
+    @Override
+    public void analyze(float[] samples, int offset, BandLayout layout, float[] outBands) {
+        for (int i = 0; i < n; i++) {
+            re[i] = samples[offset + i] * window[i];
+            im[i] = 0f;
+        }
+        transform(layout, outBands);
+    }
+
+    private void transform(BandLayout layout, float[] outBands) {
+        fft.forward(re, im);
+        for (int b = 0; b < layout.numBands(); b++) {
+            float sum = 0;
+            for (int k = layout.start(b), end = layout.end(b); k < end; k++) {
+                sum += (float) Math.sqrt(re[k] * re[k] + im[k] * im[k]);
+            }
+            outBands[b] = sum * scale;
+        }
+    }
+}
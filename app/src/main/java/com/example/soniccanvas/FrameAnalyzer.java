@@ -0,0 +1,131 @@
+package com.example.soniccanvas;
+
+/**
+ * The single per-frame analysis pass shared by every visible renderer.
+ *
+ * Gain, RMS, bands, beat onsets, pitch and (when a notes view is showing)
+ * the constant-Q spectrum are computed once here into an AnalysisFrame, so
+ * attaching a second or third renderer, or a FrameStreamer, adds only its
+ * own mapping and output time.
+ */
+final class FrameAnalyzer {
+    static final int NUM_BANDS = BarsRenderer.DEFAULT_BARS;
+    static final int NUM_NOTES = NotesRenderer.DEFAULT_BINS;
+    // C2
+    static final float NOTES_MIN_FREQUENCY = 65.406f;
+    // The frame being drawn, one a renderer kept, and one being filled
+    private static final int POOL_SIZE = 4;
+
+    private final AnalysisFramePool pool = new AnalysisFramePool(POOL_SIZE, NUM_BANDS, NUM_NOTES);
+    // Display gain, derived from running loudness percentiles instead of fixed constants
+    private final AutoGainControl autoGain = new AutoGainControl();
+    private final SampleBands sampleBands = new SampleBands(NUM_BANDS);
+    private final BeatDetector beatDetector = new BeatDetector(NUM_BANDS);
+    private PitchTracker pitchTracker;
+    private SpectrumTracker spectrumTracker;
+    private ConstantQTransform constantQ;
+    private boolean notesEnabled = false;
+
+    void setPitchTracker(PitchTracker pitchTracker) {
+        this.pitchTracker = pitchTracker;
+    }
+
+    void setSpectrumTracker(SpectrumTracker spectrumTracker) {
+        this.spectrumTracker = spectrumTracker;
+    }
+
+    /** Runs the constant-Q transform only while a notes view is visible. */
+    void setNotesEnabled(boolean enabled) {
+        if (enabled == notesEnabled) return;
+        notesEnabled = enabled;
+        if (constantQ != null) {
+            constantQ.reset();
+        }
+    }
+
+    /** Pooled frames currently held by the caller or renderers. */
+    int framesInUse() {
+        return POOL_SIZE - pool.available();
+    }
+
+    float gain() {
+        return autoGain.gain();
+    }
+
+    void reset() {
+        beatDetector.reset();
+        if (constantQ != null) {
+            constantQ.reset();
+        }
+    }
+
+    /**
+     * Analyses a heap frame; {@code data} is copied.
+     *
+     * @return a frame holding one reference for the caller, or null if every frame is still held
+     */
+    AnalysisFrame analyze(float loudness, float[] data, int size, int sampleRate) {
+        AnalysisFrame frame = pool.acquire();
+        if (frame == null) return null;
+        frame.setSamples(data, size);
+        fill(frame, loudness, sampleRate);
+        return frame;
+    }
+
+    /** Zero-copy variant; takes over the caller's reference to {@code buffer}. */
+    AnalysisFrame analyze(float loudness, AudioBuffer buffer, int sampleRate) {
+        AnalysisFrame frame = pool.acquire();
+        if (frame == null) {
+            buffer.release();
+            return null;
+        }
+        frame.setAudioBuffer(buffer);
+        fill(frame, loudness, sampleRate);
+        return frame;
+    }
+
+    private void fill(AnalysisFrame frame, float loudness, int sampleRate) {
+        long now = System.nanoTime();
+        frame.setTimestamp(now);
+        float gain = autoGain.process(loudness);
+        frame.setLevels(sampleRate, loudness, gain, Math.min(loudness * gain, 1f));
+        frame.setRms(rms(frame));
+
+        float[] bands = frame.bandsForWriting();
+        SpectrumTracker spectrum = spectrumTracker;
+        boolean haveSpectrum = spectrum != null && spectrum.isEnabled()
+                && spectrum.numBands() == NUM_BANDS && spectrum.copyBands(bands);
+        if (!haveSpectrum) {
+            if (frame.size() > 0) {
+                sampleBands.compute(frame, bands);
+            } else {
+                frame.clearBands();
+            }
+        }
+        frame.setBeat(beatDetector.process(bands, now), beatDetector.strength());
+
+        PitchTracker pitch = pitchTracker;
+        if (pitch != null && pitch.isEnabled()) {
+            frame.setPitch(pitch.getFrequency(), pitch.getProbability());
+        }
+
+        if (notesEnabled && frame.size() > 0) {
+            if (constantQ == null || constantQ.sampleRate() != sampleRate) {
+                constantQ = new ConstantQTransform(sampleRate, NOTES_MIN_FREQUENCY, NUM_NOTES);
+            }
+            constantQ.write(frame);
+            constantQ.transform(frame.notesForWriting());
+        }
+    }
+
+    private static float rms(SampleSource samples) {
+        int size = samples.size();
+        if (size == 0) return 0;
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            float x = samples.sample(i);
+            sum += x * x;
+        }
+        return (float) Math.sqrt(sum / size);
+    }
+}
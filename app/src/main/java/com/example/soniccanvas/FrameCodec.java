@@ -0,0 +1,53 @@
+package com.example.soniccanvas;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-layout binary encoding of one analysis frame for FrameStreamer.
+ *
+ * Every frame has the same size for a given band count, so a consumer can
+ * read whole frames off the stream without any parsing state. Big-endian:
+ *
+ * <pre>
+ *  0  int    MAGIC, "SCFS"
+ *  4  int    sequence, counting frames offered including ones dropped before sending
+ *  8  long   timestamp, System.nanoTime() at analysis
+ * 16  float  RMS before gain, 0..1
+ * 20  float  level after automatic gain, 0..1
+ * 24  float  beat strength, 0 when this frame is not a beat onset
+ * 28  byte   flags, FLAG_BEAT
+ * 29  byte   VERSION
+ * 30  short  band count n
+ * 32  float  n band energies
+ * </pre>
+ */
+final class FrameCodec {
+    static final int MAGIC = 0x53434653;
+    static final byte VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int FLAG_BEAT = 1;
+
+    private FrameCodec() {
+    }
+
+    static int frameBytes(int numBands) {
+        return HEADER_BYTES + 4 * numBands;
+    }
+
+    /** Writes {@code frame} at {@code offset} without moving the buffer's position. */
+    static void encode(AnalysisFrame frame, int sequence, ByteBuffer out, int offset) {
+        out.putInt(offset, MAGIC);
+        out.putInt(offset + 4, sequence);
+        out.putLong(offset + 8, frame.timestampNanos());
+        out.putFloat(offset + 16, frame.rms());
+        out.putFloat(offset + 20, frame.level());
+        out.putFloat(offset + 24, frame.beatStrength());
+        out.put(offset + 28, (byte) (frame.beat() ? FLAG_BEAT : 0));
+        out.put(offset + 29, VERSION);
+        int numBands = frame.numBands();
+        out.putShort(offset + 30, (short) numBands);
+        for (int i = 0, at = offset + HEADER_BYTES; i < numBands; i++, at += 4) {
+            out.putFloat(at, frame.band(i));
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.soniccanvas;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams analysis frames to external displays over a loopback TCP socket.
+ *
+ * The analysing thread encodes each frame with FrameCodec into a
+ * preallocated single-producer ring and returns; it never blocks and never
+ * touches a socket. If the ring is full the frame is dropped. A selector
+ * thread moves frames from the ring into each client's send buffer and
+ * writes with non-blocking channels. Everything that queued up while a
+ * write was pending goes out in the next single write, so frames coalesce
+ * under load. A client that is behind skips frames until its buffer has
+ * room; one that accepts nothing for SLOW_CLIENT_NANOS is disconnected
+ * rather than allowed to hold back the others.
+ *
+ * The socket is bound to loopback; a display host reaches it with
+ * {@code adb forward tcp:7878 tcp:7878}.
+ */
+public class FrameStreamer {
+    private static final String TAG = "SonicCanvas";
+    public static final int DEFAULT_PORT = 7878;
+    // Frames between the producer and the selector thread
+    private static final int RING_FRAMES = 64;
+    // Backlog per client on top of the kernel's send buffer
+    private static final int CLIENT_BUFFER_FRAMES = 32;
+    private static final long SLOW_CLIENT_NANOS = 500_000_000L;
+    private static final int MAX_CLIENTS = 8;
+
+    private final int requestedPort;
+    private final int numBands;
+    private final int frameBytes;
+    private final ByteBuffer ring;
+    // Read only by the selector thread
+    private final ByteBuffer ringView;
+    private final AtomicLong head = new AtomicLong();
+    private volatile long tail = 0;
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    // Producer only
+    private int sequence = 0;
+
+    // Selector thread only
+    private final List<Client> clients = new ArrayList<>();
+    private final ByteBuffer discard = ByteBuffer.allocate(256);
+
+    private volatile int clientCount = 0;
+    // Counted by both threads
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private volatile long droppedClients = 0;
+    private volatile long framesQueued = 0;
+    private volatile long writes = 0;
+    private volatile long bytesSent = 0;
+
+    private ServerSocketChannel server;
+    private Selector selector;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    private static final class Client {
+        final SocketChannel channel;
+        final SelectionKey key;
+        // Kept in fill mode: everything before position is waiting to be sent
+        final ByteBuffer out;
+        // Last time the socket took bytes or there was nothing to send
+        long progressNanos;
+
+        Client(SocketChannel channel, SelectionKey key, int capacity) {
+            this.channel = channel;
+            this.key = key;
+            out = ByteBuffer.allocateDirect(capacity);
+            progressNanos = System.nanoTime();
+        }
+    }
+
+    /** @param port TCP port on loopback, or 0 for any free port */
+    public FrameStreamer(int port, int numBands) {
+        requestedPort = port;
+        this.numBands = numBands;
+        frameBytes = FrameCodec.frameBytes(numBands);
+        ring = ByteBuffer.allocate(RING_FRAMES * frameBytes);
+        ringView = ring.duplicate();
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) return;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), requestedPort));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+        running = true;
+        thread = new Thread(this::run, "FrameStreamer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** The bound port, or -1 while stopped. */
+    public synchronized int port() {
+        return running ? server.socket().getLocalPort() : -1;
+    }
+
+    public int clientCount() {
+        return clientCount;
+    }
+
+    /**
+     * Frames dropped because the selector thread had fallen a whole ring
+     * behind, plus frames skipped for each client that was behind.
+     */
+    public long droppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /** Clients disconnected for not reading fast enough. */
+    public long droppedClients() {
+        return droppedClients;
+    }
+
+    /** Average frames per socket write; above 1 when writes coalesce. */
+    public float framesPerWrite() {
+        long w = writes;
+        return w == 0 ? 0 : (float) bytesSent / frameBytes / w;
+    }
+
+    long framesQueued() {
+        return framesQueued;
+    }
+
+    long writes() {
+        return writes;
+    }
+
+    /**
+     * Queues {@code frame} for every connected client. Called from the one
+     * analysing thread; never blocks.
+     *
+     * @return false if the frame was dropped
+     */
+    public boolean offer(AnalysisFrame frame) {
+        if (clientCount == 0 || frame.numBands() != numBands) return false;
+        int seq = sequence++;
+        long h = head.get();
+        if (h - tail >= RING_FRAMES) {
+            droppedFrames.incrementAndGet();
+            return false;
+        }
+        FrameCodec.encode(frame, seq, ring, (int) (h % RING_FRAMES) * frameBytes);
+        head.set(h + 1);
+        // One wakeup covers every frame queued before the selector thread gets to them
+        if (!wakeupPending.getAndSet(true)) {
+            selector.wakeup();
+        }
+        return true;
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                wakeupPending.set(false);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Client client = (Client) key.attachment();
+                        if (key.isReadable()) {
+                            drainInput(client);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            send(client);
+                        }
+                    }
+                }
+                drainRing();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Frame streaming stopped: " + e.getMessage());
+        } finally {
+            running = false;
+            for (int i = clients.size() - 1; i >= 0; i--) {
+                close(clients.get(i));
+            }
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing frame stream: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            if (clients.size() >= MAX_CLIENTS) {
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            // A small kernel buffer bounds latency and lets a stalled reader show up as a slow client
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, CLIENT_BUFFER_FRAMES * frameBytes);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            Client client = new Client(channel, key, CLIENT_BUFFER_FRAMES * frameBytes);
+            key.attach(client);
+            clients.add(client);
+            clientCount = clients.size();
+        }
+    }
+
+    // Clients have nothing to say; reading only notices when they hang up
+    private void drainInput(Client client) {
+        try {
+            int read;
+            do {
+                discard.clear();
+                read = client.channel.read(discard);
+            } while (read > 0);
+            if (read < 0) close(client);
+        } catch (IOException e) {
+            close(client);
+        }
+    }
+
+    // Selector thread only; package-private so a test can stall it as a slow write would
+    void drainRing() {
+        long h = head.get();
+        long t = tail;
+        if (t == h) return;
+        long now = System.nanoTime();
+        for (; t < h; t++) {
+            int offset = (int) (t % RING_FRAMES) * frameBytes;
+            for (int i = clients.size() - 1; i >= 0; i--) {
+                Client client = clients.get(i);
+                if (client.out.remaining() < frameBytes) {
+                    send(client);
+                    if (!client.channel.isOpen()) continue;
+                }
+                if (client.out.remaining() < frameBytes) {
+                    if (now - client.progressNanos > SLOW_CLIENT_NANOS) {
+                        droppedClients++;
+                        close(client);
+                    } else {
+                        droppedFrames.incrementAndGet();
+                    }
+                    continue;
+                }
+                ringView.limit(offset + frameBytes).position(offset);
+                client.out.put(ringView);
+            }
+            framesQueued++;
+        }
+        // Hands the slots back to the producer
+        tail = t;
+        for (int i = clients.size() - 1; i >= 0; i--) {
+            send(clients.get(i));
+        }
+    }
+
+    // One write for everything pending; waits for OP_WRITE if the socket is full
+    private void send(Client client) {
+        if (client.out.position() == 0) {
+            client.progressNanos = System.nanoTime();
+            return;
+        }
+        try {
+            client.out.flip();
+            int written = client.channel.write(client.out);
+            client.out.compact();
+            if (written > 0) {
+                writes++;
+                bytesSent += written;
+                client.progressNanos = System.nanoTime();
+            }
+            int ops = SelectionKey.OP_READ;
+            if (client.out.position() > 0) ops |= SelectionKey.OP_WRITE;
+            client.key.interestOps(ops);
+        } catch (IOException e) {
+            close(client);
+        }
+    }
+
+    private void close(Client client) {
+        clients.remove(client);
+        clientCount = clients.size();
+        client.key.cancel();
+        try {
+            client.channel.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.soniccanvas;
+
+/**
+ * SampleSource over a heap float[] that is swapped in without copying.
+ */
+public final class HeapSamples implements SampleSource {
+    private float[] data = new float[0];
+    private int size;
+
+    public void set(float[] data, int size) {
+        this.data = data;
+        this.size = size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public float sample(int i) {
+        return data[i];
+    }
+}
@@ -1,4 +1,3 @@
-
 package com.example.soniccanvas;
 
 import androidx.appcompat.app.AppCompatActivity;
@@ -7,14 +6,15 @@ import android.Manifest;
 import android.content.pm.PackageManager;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
-import android.media.AudioRecord;
-import android.media.MediaRecorder;
-import android.media.audiofx.Visualizer;
+import androidx.lifecycle.ViewModelProvider;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
+import android.view.Menu;
+import android.view.SubMenu;
 import android.view.View;
 import android.widget.Button;
+import android.widget.PopupMenu;
 import android.widget.Toast;
 import android.widget.TextView;
 import com.google.android.material.chip.Chip;
@@ -27,25 +27,29 @@ public class MainActivity extends AppCompatActivity {
     private static final int PERMISSION_REQUEST_CODE = 123;
     private static final int RECORD_AUDIO_PERMISSION = 0;
     private static final int MODIFY_AUDIO_PERMISSION = 1;
-    private static final int SAMPLE_RATE = 44100;
-    private static final int CHANNEL_CONFIG = android.media.AudioFormat.CHANNEL_IN_MONO;
-    private static final int AUDIO_FORMAT = android.media.AudioFormat.ENCODING_PCM_16BIT;
-    private static final int BUFFER_SIZE = AudioRecord.getMinBufferSize(SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT);
-    private static final long VISUALIZATION_INTERVAL = 16;
-
-    // Audio capture options
-    private AudioRecord audioRecord;
-    private Visualizer visualizer; // For device audio
+    private static final int FIXED_POINT_ITEM = 1;
+    private static final int SPECTRUM_WINDOW_GROUP = 1;
+    private static final int SPECTRUM_OVERLAP_GROUP = 2;
+    // In WindowFunction and SlidingStft.Overlap order
+    private static final String[] WINDOW_LABELS = {"Hann", "Hamming", "Blackman-Harris"};
+    private static final String[] OVERLAP_LABELS = {"None", "50%", "75%"};
+
+    // Audio capture lives in the ViewModel and outlives configuration changes
+    private CaptureViewModel captureViewModel;
+    private CaptureController captureController;
     private boolean isUsingMicrophone = true;
+    private boolean syncingSourceSwitch = false;
 
-    private boolean isRecording = false;
-    private Thread recordingThread;
     private VisualizerView visualizerView;
+    private AnimatedBackgroundView animatedBackground;
     private Handler handler = new Handler(Looper.getMainLooper());
     private Button startStopButton;
     private Chip waveformChip;
     private Chip barsChip;
     private Chip circularChip;
+    private Chip tunerChip;
+    private Chip notesChip;
+    private Chip splitChip;
     private TextView permissionText;
     private ChipGroup visualizerTypesGroup;
     private SwitchMaterial audioSourceSwitch;
@@ -58,44 +62,81 @@ public class MainActivity extends AppCompatActivity {
 
         // Initialize views
         visualizerView = findViewById(R.id.visualizerView);
+        animatedBackground = findViewById(R.id.animatedBackground);
         startStopButton = findViewById(R.id.startStopButton);
         waveformChip = findViewById(R.id.waveformButton);
         barsChip = findViewById(R.id.barsButton);
         circularChip = findViewById(R.id.circularButton);
+        tunerChip = findViewById(R.id.tunerButton);
+        notesChip = findViewById(R.id.notesButton);
+        splitChip = findViewById(R.id.splitButton);
         permissionText = findViewById(R.id.permissionText);
         visualizerTypesGroup = findViewById(R.id.visualizerTypesGroup);
         audioSourceSwitch = findViewById(R.id.audioSourceSwitch);
 
+        captureViewModel = new ViewModelProvider(this).get(CaptureViewModel.class);
+        captureController = captureViewModel.getCaptureController();
+        currentVisualizerType = captureViewModel.getVisualizerType();
+
+        visualizerView.setPitchTracker(captureViewModel.getPitchTracker());
+        visualizerView.setSpectrumTracker(captureViewModel.getSpectrumTracker());
+        visualizerView.setFrameStreamer(captureViewModel.getFrameStreamer());
         visualizerView.setVisualizerType(currentVisualizerType);
-        visualizerView.setSensitivityMultiplier(5.0f); // Increase sensitivity
+
+        // Re-attaches to the stream if capture survived a configuration change
+        captureController.addListener(captureListener);
 
         // Request audio permissions
         requestAudioPermissions();
 
         // Set up audio source switch listener
         audioSourceSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (syncingSourceSwitch) return;
             isUsingMicrophone = !isChecked;
 
-            if (isRecording) {
-                stopRecording();
-                startRecording();
-            }
+            // Switching is asynchronous; the inactive source is kept warm
+            captureController.setSource(isUsingMicrophone
+                    ? CaptureController.Source.MICROPHONE
+                    : CaptureController.Source.DEVICE_AUDIO);
 
             String message = isUsingMicrophone ? "Using microphone for input" : "Using device audio for input";
             Toast.makeText(MainActivity.this, message, Toast.LENGTH_SHORT).show();
         });
 
+        // Long-pressing the source switch toggles reading the mic into pooled direct buffers
+        audioSourceSwitch.setOnLongClickListener(v -> {
+            boolean zeroCopy = !captureViewModel.isZeroCopyCapture();
+            captureViewModel.setZeroCopyCapture(zeroCopy);
+            Toast.makeText(MainActivity.this,
+                    zeroCopy ? "Using zero-copy microphone capture" : "Using standard microphone capture",
+                    Toast.LENGTH_SHORT).show();
+            return true;
+        });
+
         // Set up click listeners
         startStopButton.setOnClickListener(v -> {
-            if (isRecording) {
-                stopRecording();
-                startStopButton.setText(R.string.start_visualizer);
+            if (captureController.isRunning()) {
+                captureController.stop();
             } else {
-                startRecording();
-                startStopButton.setText(R.string.stop_visualizer);
+                captureController.start();
             }
         });
 
+        // Long-pressing start/stop toggles streaming analysis frames to external displays
+        startStopButton.setOnLongClickListener(v -> {
+            boolean streaming = !captureViewModel.isStreamingFrames();
+            String message;
+            if (!captureViewModel.setStreamingFrames(streaming)) {
+                message = "Cannot open port " + FrameStreamer.DEFAULT_PORT + " for streaming";
+            } else if (streaming) {
+                message = "Streaming frames on port " + FrameStreamer.DEFAULT_PORT;
+            } else {
+                message = "Stopped streaming frames";
+            }
+            Toast.makeText(MainActivity.this, message, Toast.LENGTH_SHORT).show();
+            return true;
+        });
+
         // Set up chip group listener
         visualizerTypesGroup.setOnCheckedStateChangeListener((group, checkedIds) -> {
             if (checkedIds.size() > 0) {
@@ -106,316 +147,181 @@ public class MainActivity extends AppCompatActivity {
                     currentVisualizerType = 1;
                 } else if (chipId == R.id.circularButton) {
                     currentVisualizerType = 2;
+                } else if (chipId == R.id.tunerButton) {
+                    currentVisualizerType = VisualizerRenderer.TUNER_TYPE;
+                } else if (chipId == R.id.notesButton) {
+                    currentVisualizerType = VisualizerRenderer.NOTES_TYPE;
+                } else if (chipId == R.id.splitButton) {
+                    currentVisualizerType = VisualizerRenderer.SPLIT_TYPE;
+                }
+                captureViewModel.setVisualizerType(currentVisualizerType);
+                // The live wallpaper draws whichever of its modes was picked last
+                if (currentVisualizerType < SonicWallpaperService.WALLPAPER_TYPES) {
+                    getSharedPreferences(SonicWallpaperService.PREFS_NAME, MODE_PRIVATE).edit()
+                            .putInt(SonicWallpaperService.PREF_VISUALIZER_TYPE, currentVisualizerType)
+                            .apply();
                 }
                 visualizerView.setVisualizerType(currentVisualizerType);
                 Log.d(TAG, "Visualizer type changed to: " + currentVisualizerType);
             }
         });
 
-        // Set initial selection
-        waveformChip.setChecked(true);
-    }
-
-    private void requestAudioPermissions() {
-        // Request RECORD_AUDIO permission
-        if (ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO) != PackageManager.PERMISSION_GRANTED) {
-            ActivityCompat.requestPermissions(this,
-                    new String[]{Manifest.permission.RECORD_AUDIO},
-                    RECORD_AUDIO_PERMISSION);
-            permissionText.setVisibility(View.VISIBLE);
-        } else {
-            permissionText.setVisibility(View.GONE);
-        }
-
-        // Request MODIFY_AUDIO_SETTINGS permission explicitly
-        if (ContextCompat.checkSelfPermission(this, Manifest.permission.MODIFY_AUDIO_SETTINGS) != PackageManager.PERMISSION_GRANTED) {
-            ActivityCompat.requestPermissions(this,
-                    new String[]{Manifest.permission.MODIFY_AUDIO_SETTINGS},
-                    MODIFY_AUDIO_PERMISSION);
-        }
-    }
+        // Long-pressing the bars chip opens the spectrum settings: engine, window and overlap
+        barsChip.setOnLongClickListener(v -> {
+            showSpectrumMenu(v);
+            return true;
+        });
 
-    private void setupAudioRecording() {
-        if (isUsingMicrophone) {
-            setupMicrophoneRecording();
+        // Set initial selection
+        if (currentVisualizerType == 1) {
+            barsChip.setChecked(true);
+        } else if (currentVisualizerType == 2) {
+            circularChip.setChecked(true);
+        } else if (currentVisualizerType == VisualizerRenderer.TUNER_TYPE) {
+            tunerChip.setChecked(true);
+        } else if (currentVisualizerType == VisualizerRenderer.NOTES_TYPE) {
+            notesChip.setChecked(true);
+        } else if (currentVisualizerType == VisualizerRenderer.SPLIT_TYPE) {
+            splitChip.setChecked(true);
         } else {
-            setupDeviceAudioCapture();
+            waveformChip.setChecked(true);
         }
     }
 
-    private void setupMicrophoneRecording() {
-        try {
-            if (ActivityCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO) != PackageManager.PERMISSION_GRANTED) {
-                Toast.makeText(this, "Microphone permission required", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
-            // Release device audio visualizer if it exists
-            releaseDeviceAudioVisualizer();
-
-            audioRecord = new AudioRecord(
-                    MediaRecorder.AudioSource.MIC,
-                    SAMPLE_RATE,
-                    CHANNEL_CONFIG,
-                    AUDIO_FORMAT,
-                    BUFFER_SIZE
-            );
-
-            if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
-                Log.e(TAG, "AudioRecord not initialized");
-                Toast.makeText(this, "AudioRecord failed to initialize.", Toast.LENGTH_LONG).show();
-                return;
-            }
-            Log.d(TAG, "Microphone recording setup successfully");
-        } catch (IllegalArgumentException e) {
-            Log.e(TAG, "Error initializing AudioRecord: " + e.getMessage());
-            Toast.makeText(this, "Error initializing audio recording. Please check your device.", Toast.LENGTH_LONG).show();
+    // Capture frames reach the main thread through one slot and one Runnable, so reads allocate nothing
+    private final AudioFrameSlot audioSlot = new AudioFrameSlot();
+    private final AudioFrameSlot.Consumer applyFrame = new AudioFrameSlot.Consumer() {
+        @Override
+        public void onAudioData(float magnitude, float[] data, int size, int sampleRate) {
+            visualizerView.setSampleRate(sampleRate);
+            visualizerView.updateVisualizer(magnitude, data, size);
+            animatedBackground.setEnergy(visualizerView.getLevel());
         }
-    }
-
-    private void setupDeviceAudioCapture() {
-        try {
-            // Release microphone if it exists
-            releaseMicrophoneRecording();
-
-            // Check permission for MODIFY_AUDIO_SETTINGS
-            if (ContextCompat.checkSelfPermission(this, Manifest.permission.MODIFY_AUDIO_SETTINGS)
-                    != PackageManager.PERMISSION_GRANTED) {
-                Toast.makeText(this, "Audio settings permission required for device audio capture", Toast.LENGTH_LONG).show();
-                isUsingMicrophone = true;
-                audioSourceSwitch.setChecked(false);
-                setupMicrophoneRecording();
-                return;
-            }
 
-            // Create a Visualizer to capture device audio output
-            int captureSize = Visualizer.getCaptureSizeRange()[1]; // Use maximum capture size
-            Log.d(TAG, "Creating visualizer with capture size: " + captureSize);
-
-            try {
-                visualizer = new Visualizer(0); // 0 = output mix (device audio)
-                visualizer.setEnabled(false);
-                visualizer.setCaptureSize(captureSize);
-
-                // Set up data capture listener
-                visualizer.setDataCaptureListener(
-                        new Visualizer.OnDataCaptureListener() {
-                            @Override
-                            public void onWaveFormDataCapture(Visualizer visualizer, byte[] waveform, int samplingRate) {
-                                // Convert byte[] to short[] for compatibility with existing code
-                                short[] audioData = new short[waveform.length];
-                                for (int i = 0; i < waveform.length; i++) {
-                                    audioData[i] = (short) ((waveform[i] & 0xFF) * 128); // Amplify signal for better visualization
-                                }
-
-                                float magnitude = calculateMagnitude(audioData, audioData.length);
-                                visualizerView.updateVisualizer(magnitude * 2.0f, audioData, audioData.length); // Increase sensitivity
-                            }
-
-                            @Override
-                            public void onFftDataCapture(Visualizer visualizer, byte[] fft, int samplingRate) {
-                                // We're not using FFT data in this implementation
-                            }
-                        },
-                        Visualizer.getMaxCaptureRate(), // Maximum capture rate for smooth visualization
-                        true, // Capture waveform
-                        false // Don't capture FFT
-                );
-                Log.d(TAG, "Device audio capture setup successfully");
-
-            } catch (Exception e) {
-                Log.e(TAG, "Error creating Visualizer: " + e.getMessage(), e);
-                throw e;
-            }
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error setting up device audio capture: " + e.getMessage(), e);
-            Toast.makeText(this, "Error setting up device audio capture. Falling back to microphone.", Toast.LENGTH_LONG).show();
-            isUsingMicrophone = true;
-            audioSourceSwitch.setChecked(false);
-            setupMicrophoneRecording();
+        @Override
+        public void onAudioBuffer(float magnitude, AudioBuffer buffer, int sampleRate) {
+            // The view releases the buffer when the next frame replaces it
+            visualizerView.setSampleRate(sampleRate);
+            visualizerView.updateVisualizer(magnitude, buffer);
+            animatedBackground.setEnergy(visualizerView.getLevel());
         }
-    }
-
-    private void releaseMicrophoneRecording() {
-        if (audioRecord != null) {
-            try {
-                if (audioRecord.getState() == AudioRecord.STATE_INITIALIZED) {
-                    if (audioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
-                        audioRecord.stop();
-                    }
-                }
-                audioRecord.release();
-                audioRecord = null;
-                Log.d(TAG, "Microphone recording released");
-            } catch (Exception e) {
-                Log.e(TAG, "Error releasing AudioRecord: " + e.getMessage());
-            }
+    };
+    private final Runnable applyAudio = new Runnable() {
+        @Override
+        public void run() {
+            audioSlot.apply(applyFrame);
         }
-    }
+    };
 
-    private void releaseDeviceAudioVisualizer() {
-        if (visualizer != null) {
-            try {
-                visualizer.setEnabled(false);
-                visualizer.release();
-                visualizer = null;
-                Log.d(TAG, "Device audio visualizer released");
-            } catch (Exception e) {
-                Log.e(TAG, "Error releasing Visualizer: " + e.getMessage());
+    private final CaptureController.Listener captureListener = new CaptureController.Listener() {
+        @Override
+        public void onAudioData(float magnitude, float[] data, int size, int sampleRate) {
+            if (audioSlot.offer(magnitude, data, size, sampleRate)) {
+                handler.post(applyAudio);
             }
         }
-    }
-
-    private void startRecording() {
-        setupAudioRecording();
-
-        if (isUsingMicrophone) {
-            startMicrophoneRecording();
-        } else {
-            startDeviceAudioCapture();
-        }
-    }
 
-    private void startMicrophoneRecording() {
-        if (audioRecord == null) {
-            setupMicrophoneRecording();
-            if (audioRecord == null) {
-                return;
+        @Override
+        public void onAudioBuffer(float magnitude, AudioBuffer buffer, int sampleRate) {
+            if (audioSlot.offer(magnitude, buffer, sampleRate)) {
+                handler.post(applyAudio);
             }
         }
 
-        try {
-            audioRecord.startRecording();
-            isRecording = true;
-            recordingThread = new Thread(this::processAudioData);
-            recordingThread.start();
-            Log.d(TAG, "Microphone recording started");
-        } catch (IllegalStateException e) {
-            Log.e(TAG, "Error starting AudioRecord: " + e.getMessage());
-            Toast.makeText(this, "Error starting audio recording.", Toast.LENGTH_LONG).show();
-        }
-    }
-
-    private void startDeviceAudioCapture() {
-        if (visualizer == null) {
-            setupDeviceAudioCapture();
-            if (visualizer == null) {
-                return;
-            }
+        @Override
+        public void onStateChanged(CaptureController.State state, CaptureController.Source source) {
+            handler.post(() -> {
+                boolean running = state == CaptureController.State.RUNNING || state == CaptureController.State.STARTING;
+                startStopButton.setText(running ? R.string.stop_visualizer : R.string.start_visualizer);
+                syncSourceSwitch(source);
+                if (!running) {
+                    visualizerView.clear();
+                    animatedBackground.setEnergy(0);
+                }
+            });
         }
 
-        try {
-            visualizer.setEnabled(true);
-            isRecording = true;
-            Log.d(TAG, "Device audio capture started");
-        } catch (IllegalStateException e) {
-            Log.e(TAG, "Error enabling Visualizer: " + e.getMessage());
-            Toast.makeText(this, "Error capturing device audio.", Toast.LENGTH_LONG).show();
+        @Override
+        public void onError(CaptureController.Source source, String message) {
+            Log.e(TAG, "Capture error (" + source + "): " + message);
+            handler.post(() -> Toast.makeText(MainActivity.this, message, Toast.LENGTH_LONG).show());
         }
-    }
-
-    private void stopRecording() {
-        isRecording = false;
-
-        if (isUsingMicrophone) {
-            stopMicrophoneRecording();
-        } else {
-            stopDeviceAudioCapture();
+    };
+
+    // Reflects a fallback to the microphone without re-triggering the switch listener
+    private void showSpectrumMenu(View anchor) {
+        PopupMenu popup = new PopupMenu(this, anchor);
+        Menu menu = popup.getMenu();
+        menu.add(Menu.NONE, FIXED_POINT_ITEM, 0, "Fixed-point engine")
+                .setCheckable(true)
+                .setChecked(captureViewModel.isFixedPointDsp());
+
+        SubMenu windows = menu.addSubMenu(Menu.NONE, Menu.NONE, 1, "Window");
+        WindowFunction[] windowValues = WindowFunction.values();
+        for (int i = 0; i < windowValues.length; i++) {
+            windows.add(SPECTRUM_WINDOW_GROUP, i, i, WINDOW_LABELS[i])
+                    .setChecked(windowValues[i] == captureViewModel.getSpectrumWindow());
         }
+        windows.setGroupCheckable(SPECTRUM_WINDOW_GROUP, true, true);
 
-        handler.post(visualizerView::clear);
-    }
-
-    private void stopMicrophoneRecording() {
-        if (audioRecord != null) {
-            try {
-                audioRecord.stop();
-                audioRecord.release();
-                audioRecord = null;
-                Log.d(TAG, "Microphone recording stopped");
-            } catch (Exception e) {
-                Log.e(TAG, "Error stopping recording: " + e.getMessage());
-            }
+        SubMenu overlaps = menu.addSubMenu(Menu.NONE, Menu.NONE, 2, "Overlap");
+        SlidingStft.Overlap[] overlapValues = SlidingStft.Overlap.values();
+        for (int i = 0; i < overlapValues.length; i++) {
+            overlaps.add(SPECTRUM_OVERLAP_GROUP, i, i, OVERLAP_LABELS[i])
+                    .setChecked(overlapValues[i] == captureViewModel.getSpectrumOverlap());
         }
-
-        if (recordingThread != null) {
-            try {
-                recordingThread.join();
-                recordingThread = null;
-                Log.d(TAG, "Recording thread stopped");
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                Log.e(TAG, "Error stopping recording thread: " + e.getMessage());
+        overlaps.setGroupCheckable(SPECTRUM_OVERLAP_GROUP, true, true);
+
+        popup.setOnMenuItemClickListener(item -> {
+            switch (item.getGroupId()) {
+                case SPECTRUM_WINDOW_GROUP:
+                    captureViewModel.setSpectrumWindow(windowValues[item.getItemId()]);
+                    return true;
+                case SPECTRUM_OVERLAP_GROUP:
+                    captureViewModel.setSpectrumOverlap(overlapValues[item.getItemId()]);
+                    return true;
+                default:
+                    // The submenu headers open their submenus
+                    if (item.getItemId() != FIXED_POINT_ITEM) return false;
+                    captureViewModel.setFixedPointDsp(!item.isChecked());
+                    return true;
             }
-        }
+        });
+        popup.show();
     }
 
-    private void stopDeviceAudioCapture() {
-        if (visualizer != null) {
-            try {
-                visualizer.setEnabled(false);
-                Log.d(TAG, "Device audio capture stopped");
-            } catch (Exception e) {
-                Log.e(TAG, "Error disabling Visualizer: " + e.getMessage());
-            }
-        }
+    private void syncSourceSwitch(CaptureController.Source source) {
+        isUsingMicrophone = source == CaptureController.Source.MICROPHONE;
+        syncingSourceSwitch = true;
+        audioSourceSwitch.setChecked(!isUsingMicrophone);
+        syncingSourceSwitch = false;
     }
 
-    private void processAudioData() {
-        short[] buffer = new short[BUFFER_SIZE / 4];
-        while (isRecording && audioRecord != null) {
-            int readResult = 0;
-            try {
-                readResult = audioRecord.read(buffer, 0, buffer.length);
-            } catch (IllegalStateException e) {
-                Log.e(TAG, "Error reading audio data: " + e.getMessage());
-                stopRecording();
-                return;
-            }
-
-            if (readResult > 0) {
-                float magnitude = calculateMagnitude(buffer, readResult);
-                int finalReadResult = readResult;
-                // Increase sensitivity by multiplying magnitude
-                handler.post(() -> visualizerView.updateVisualizer(magnitude * 2.5f, buffer, finalReadResult));
-            } else if (readResult < 0) {
-                Log.e(TAG, "Error reading audio data, readResult: " + readResult);
-                stopRecording();
-                return;
-            }
-            try {
-                Thread.sleep(VISUALIZATION_INTERVAL);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                Log.e(TAG, "Thread sleep interrupted: " + e.getMessage());
-                return;
-            }
+    private void requestAudioPermissions() {
+        // Request RECORD_AUDIO permission
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO) != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this,
+                    new String[]{Manifest.permission.RECORD_AUDIO},
+                    RECORD_AUDIO_PERMISSION);
+            permissionText.setVisibility(View.VISIBLE);
+        } else {
+            permissionText.setVisibility(View.GONE);
         }
-    }
 
-    private float calculateMagnitude(short[] buffer, int readResult) {
-        float sum = 0;
-        for (int i = 0; i < readResult; i++) {
-            sum += Math.abs(buffer[i]);
+        // Request MODIFY_AUDIO_SETTINGS permission explicitly
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.MODIFY_AUDIO_SETTINGS) != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this,
+                    new String[]{Manifest.permission.MODIFY_AUDIO_SETTINGS},
+                    MODIFY_AUDIO_PERMISSION);
         }
-        return sum / readResult;
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        releaseMicrophoneRecording();
-        releaseDeviceAudioVisualizer();
-
-        if (recordingThread != null) {
-            try {
-                recordingThread.join();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-            recordingThread = null;
-        }
+        // Capture keeps running across rotation; the ViewModel releases it once we are finished
+        captureController.removeListener(captureListener);
+        audioSlot.clear();
     }
 
     @Override
@@ -441,8 +347,8 @@ public class MainActivity extends AppCompatActivity {
                     // If permission denied, disable device audio option
                     Toast.makeText(this, "Permission needed for device audio capture. Only microphone will be available.", Toast.LENGTH_LONG).show();
                     Log.e(TAG, "MODIFY_AUDIO_SETTINGS permission denied");
-                    isUsingMicrophone = true;
-                    audioSourceSwitch.setChecked(false);
+                    captureController.setSource(CaptureController.Source.MICROPHONE);
+                    syncSourceSwitch(CaptureController.Source.MICROPHONE);
                     audioSourceSwitch.setEnabled(false);
                 }
                 break;
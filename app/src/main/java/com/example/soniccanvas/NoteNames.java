@@ -0,0 +1,40 @@
+package com.example.soniccanvas;
+
+/**
+ * Frequency to equal-tempered note conversion, A4 = 440 Hz.
+ *
+ * Names for every MIDI note are built once so drawing a note label never
+ * allocates.
+ */
+final class NoteNames {
+    private static final String[] PITCH_CLASSES = {"C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B"};
+    private static final String[] NAMES = new String[128];
+
+    static {
+        for (int midi = 0; midi < NAMES.length; midi++) {
+            NAMES[midi] = PITCH_CLASSES[midi % 12] + (midi / 12 - 1);
+        }
+    }
+
+    private NoteNames() {
+    }
+
+    /** Fractional MIDI note number for {@code frequency}. */
+    static float midiNote(float frequency) {
+        return 69f + 12f * (float) (Math.log(frequency / 440.0) / Math.log(2.0));
+    }
+
+    static int nearestNote(float frequency) {
+        return Math.max(0, Math.min(127, Math.round(midiNote(frequency))));
+    }
+
+    /** Offset from the nearest note in cents, -50..50. */
+    static float cents(float frequency) {
+        float midi = midiNote(frequency);
+        return (midi - Math.round(midi)) * 100f;
+    }
+
+    static String name(int midi) {
+        return NAMES[Math.max(0, Math.min(127, midi))];
+    }
+}
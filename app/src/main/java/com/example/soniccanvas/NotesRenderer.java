@@ -0,0 +1,92 @@
+package com.example.soniccanvas;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * Constant-Q spectrum with one bar per semitone from C2 upwards.
+ *
+ * Unlike BarsRenderer the bars are musical notes, so an octave takes the
+ * same width anywhere on the keyboard. The constant-Q spectrum itself is
+ * computed by FrameAnalyzer while this view is showing.
+ */
+public class NotesRenderer implements Renderer {
+    public static final int DEFAULT_BINS = 84;
+    private static final float ATTACK_MS = 20f;
+    private static final float RELEASE_MS = 200f;
+    private static final float PEAK_HOLD_MS = 400f;
+    private static final float PEAK_FALL_RATE = 0.5f;
+    private static final float PEAK_CAP_HEIGHT = 4f;
+    // Bars span this many decibels below full scale
+    private static final float RANGE_DB = 60f;
+
+    private final Paint paint;
+    private final int numBins;
+    private final BarGeometry geometry;
+    private final BandSmoother smoother;
+    private final float[] targets;
+    private boolean hasFrame = false;
+
+    public NotesRenderer(int color) {
+        this(color, DEFAULT_BINS);
+    }
+
+    public NotesRenderer(int color, int numBins) {
+        paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(color);
+        paint.setStyle(Paint.Style.FILL);
+        this.numBins = numBins;
+        geometry = new BarGeometry(numBins);
+        smoother = new BandSmoother(numBins, ATTACK_MS, RELEASE_MS);
+        targets = new float[numBins];
+    }
+
+    @Override
+    public void setSize(int width, int height) {
+        geometry.setSize(width, height);
+        smoother.setPeakHold(PEAK_HOLD_MS, height * PEAK_FALL_RATE);
+    }
+
+    @Override
+    public void onFrame(AnalysisFrame frame) {
+        if (!frame.hasNotes() || frame.numNotes() != numBins) return;
+        float sensitivity = frame.gain();
+        float maxHeight = geometry.height() * 0.8f;
+        for (int i = 0; i < numBins; i++) {
+            float level = frame.note(i) * sensitivity;
+            float db = level > 0 ? 20f * (float) Math.log10(level) : -RANGE_DB;
+            float normalized = Math.max(0f, Math.min(1f, (db + RANGE_DB) / RANGE_DB));
+            targets[i] = normalized * maxHeight;
+        }
+        smoother.setTargets(targets);
+        hasFrame = true;
+    }
+
+    @Override
+    public void clear() {
+        smoother.reset();
+        hasFrame = false;
+    }
+
+    @Override
+    public boolean draw(Canvas canvas, long frameTimeNanos) {
+        if (!hasFrame) return false;
+
+        boolean animating = smoother.advance(frameTimeNanos);
+        float bottom = geometry.height();
+        for (int i = 0; i < numBins; i++) {
+            float top = bottom - smoother.value(i);
+            float left = geometry.left(i);
+            float right = geometry.right(i);
+
+            // Every C is drawn brighter so octaves are easy to find
+            paint.setAlpha(i % ConstantQTransform.BINS_PER_OCTAVE == 0 ? 255 : 170);
+            canvas.drawRect(left, top, right, bottom, paint);
+
+            float peakTop = bottom - smoother.peak(i) - PEAK_CAP_HEIGHT;
+            paint.setAlpha(220);
+            canvas.drawRect(left, peakTop, right, peakTop + PEAK_CAP_HEIGHT, paint);
+        }
+        return animating;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.soniccanvas;
+
+/**
+ * Streaming quantile estimate using the P² algorithm (Jain and Chlamtac).
+ *
+ * Five markers track the minimum, the p/2, p and (1+p)/2 quantiles and the
+ * maximum, adjusted with a piecewise-parabolic fit as samples arrive. Memory
+ * and per-sample work are constant and nothing is allocated after
+ * construction.
+ */
+final class P2Quantile {
+    private final double p;
+    private final double[] heights = new double[5];
+    private final int[] positions = new int[5];
+    private final double[] desired = new double[5];
+    private final double[] increments = new double[5];
+    private int count;
+
+    P2Quantile(double p) {
+        if (p <= 0 || p >= 1) {
+            throw new IllegalArgumentException("Quantile must be in (0, 1): " + p);
+        }
+        this.p = p;
+        increments[0] = 0;
+        increments[1] = p / 2;
+        increments[2] = p;
+        increments[3] = (1 + p) / 2;
+        increments[4] = 1;
+    }
+
+    void reset() {
+        count = 0;
+    }
+
+    int count() {
+        return count;
+    }
+
+    void add(double x) {
+        if (count < 5) {
+            // Insertion sort the first five observations into the markers
+            int i = count++;
+            while (i > 0 && heights[i - 1] > x) {
+                heights[i] = heights[i - 1];
+                i--;
+            }
+            heights[i] = x;
+            if (count == 5) {
+                for (int j = 0; j < 5; j++) {
+                    positions[j] = j;
+                }
+                desired[0] = 0;
+                desired[1] = 2 * p;
+                desired[2] = 4 * p;
+                desired[3] = 2 + 2 * p;
+                desired[4] = 4;
+            }
+            return;
+        }
+
+        // Find the cell containing x, extending the extremes if needed
+        int k;
+        if (x < heights[0]) {
+            heights[0] = x;
+            k = 0;
+        } else if (x >= heights[4]) {
+            heights[4] = x;
+            k = 3;
+        } else {
+            k = 0;
+            while (k < 3 && x >= heights[k + 1]) {
+                k++;
+            }
+        }
+
+        for (int i = k + 1; i < 5; i++) {
+            positions[i]++;
+        }
+        for (int i = 0; i < 5; i++) {
+            desired[i] += increments[i];
+        }
+
+        // Nudge the three middle markers towards their desired positions
+        for (int i = 1; i < 4; i++) {
+            double d = desired[i] - positions[i];
+            if ((d >= 1 && positions[i + 1] - positions[i] > 1)
+                    || (d <= -1 && positions[i - 1] - positions[i] < -1)) {
+                int s = d >= 0 ? 1 : -1;
+                double candidate = parabolic(i, s);
+                if (heights[i - 1] < candidate && candidate < heights[i + 1]) {
+                    heights[i] = candidate;
+                } else {
+                    heights[i] = linear(i, s);
+                }
+                positions[i] += s;
+            }
+        }
+        count++;
+    }
+
+    private double parabolic(int i, int s) {
+        double nPrev = positions[i - 1];
+        double n = positions[i];
+        double nNext = positions[i + 1];
+        return heights[i] + s / (nNext - nPrev)
+                * ((n - nPrev + s) * (heights[i + 1] - heights[i]) / (nNext - n)
+                + (nNext - n - s) * (heights[i] - heights[i - 1]) / (n - nPrev));
+    }
+
+    private double linear(int i, int s) {
+        return heights[i] + s * (heights[i + s] - heights[i]) / (positions[i + s] - positions[i]);
+    }
+
+    /** Current estimate, or 0 before any sample has been seen. */
+    double estimate() {
+        if (count == 0) return 0;
+        if (count < 5) {
+            // Markers hold the sorted observations so far
+            int index = (int) Math.min(count - 1, Math.round(p * (count - 1)));
+            return heights[index];
+        }
+        return heights[2];
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.soniccanvas;
+
+import java.util.Random;
+
+/**
+ * Fixed-capacity particle store kept as parallel primitive arrays.
+ *
+ * Dead particles are swap-removed and new ones are written into free
+ * slots in place, so after construction nothing is allocated. For drawing,
+ * live particles are counting-sorted into batches of equal size and alpha
+ * level, so thousands of them take a few drawPoints calls instead of one
+ * draw per particle.
+ */
+final class ParticleSystem {
+    static final int SIZE_CLASSES = 3;
+    static final int ALPHA_LEVELS = 8;
+    static final int BATCHES = SIZE_CLASSES * ALPHA_LEVELS;
+    // Radius of each size class in pixels
+    private static final float[] RADIUS = {2.5f, 4f, 5.5f};
+    // Particles are dropped once they fade below this alpha
+    static final float MIN_ALPHA = 10f;
+    static final float FADE_PER_SECOND = 12f;
+    private static final float MAX_SPEED = 60f;
+    private static final float BASE_SPAWN_RATE = 3.3f;
+    private static final float ENERGY_SPAWN_RATE = 600f;
+    private static final float ENERGY_ATTACK_PER_SECOND = 12f;
+    private static final float ENERGY_RELEASE_PER_SECOND = 1.5f;
+
+    private final int capacity;
+    private final int baseCount;
+    private final Random random;
+    final float[] x;
+    final float[] y;
+    final float[] vx;
+    final float[] vy;
+    final float[] alpha;
+    final byte[] sizeClass;
+    private int count = 0;
+
+    private float targetEnergy = 0;
+    private float energy = 0;
+    private float spawnBudget = 0;
+
+    // Draw batches: points[2 * batchStart[b] ...] holds batch b's x,y pairs
+    private final float[] points;
+    private final int[] batchStart = new int[BATCHES + 1];
+    private final int[] batchFill = new int[BATCHES];
+
+    ParticleSystem(int capacity, int baseCount, Random random) {
+        this.capacity = capacity;
+        this.baseCount = Math.min(baseCount, capacity);
+        this.random = random;
+        x = new float[capacity];
+        y = new float[capacity];
+        vx = new float[capacity];
+        vy = new float[capacity];
+        alpha = new float[capacity];
+        sizeClass = new byte[capacity];
+        points = new float[capacity * 2];
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int count() {
+        return count;
+    }
+
+    /** Audio energy 0..1; density rises quickly with it and relaxes slowly. */
+    void setEnergy(float energy) {
+        targetEnergy = Math.max(0f, Math.min(1f, energy));
+    }
+
+    float energy() {
+        return energy;
+    }
+
+    /** Particles wanted at the current energy. */
+    int targetCount() {
+        return baseCount + Math.round(energy * (capacity - baseCount));
+    }
+
+    void clear() {
+        count = 0;
+        spawnBudget = 0;
+    }
+
+    /** Writes a new particle into the next free slot. */
+    boolean spawn(float width, float height) {
+        if (count == capacity) return false;
+        int i = count++;
+        x[i] = random.nextFloat() * width;
+        y[i] = random.nextFloat() * height;
+        // Louder audio sends particles off faster
+        float speed = MAX_SPEED * (0.5f + energy);
+        vx[i] = (random.nextFloat() - 0.5f) * speed;
+        vy[i] = (random.nextFloat() - 0.5f) * speed;
+        alpha[i] = 50 + random.nextInt(100);
+        sizeClass[i] = (byte) random.nextInt(SIZE_CLASSES);
+        return true;
+    }
+
+    /** Removes particle {@code i} by moving the last one into its slot. */
+    void remove(int i) {
+        int last = --count;
+        x[i] = x[last];
+        y[i] = y[last];
+        vx[i] = vx[last];
+        vy[i] = vy[last];
+        alpha[i] = alpha[last];
+        sizeClass[i] = sizeClass[last];
+    }
+
+    void update(float dtSeconds, float width, float height) {
+        float rate = targetEnergy > energy ? ENERGY_ATTACK_PER_SECOND : ENERGY_RELEASE_PER_SECOND;
+        energy += (targetEnergy - energy) * Math.min(1f, rate * dtSeconds);
+
+        float fade = FADE_PER_SECOND * dtSeconds;
+        for (int i = count - 1; i >= 0; i--) {
+            float px = x[i] + vx[i] * dtSeconds;
+            float py = y[i] + vy[i] * dtSeconds;
+            float a = alpha[i] - fade;
+            float r = RADIUS[sizeClass[i]];
+            if (a <= MIN_ALPHA || px < -r || px > width + r || py < -r || py > height + r) {
+                remove(i);
+                continue;
+            }
+            x[i] = px;
+            y[i] = py;
+            alpha[i] = a;
+        }
+
+        int target = targetCount();
+        spawnBudget += dtSeconds * (BASE_SPAWN_RATE + energy * ENERGY_SPAWN_RATE);
+        while (spawnBudget >= 1f && count < target) {
+            spawn(width, height);
+            spawnBudget -= 1f;
+        }
+        // Budget does not pile up while the population is already at its target
+        if (count >= target) {
+            spawnBudget = Math.min(spawnBudget, 1f);
+        }
+    }
+
+    static float radius(int sizeClass) {
+        return RADIUS[sizeClass];
+    }
+
+    /** Alpha drawn for every particle in alpha level {@code level}. */
+    static int levelAlpha(int level) {
+        return (int) (MIN_ALPHA + (150 - MIN_ALPHA) * (level + 0.5f) / ALPHA_LEVELS);
+    }
+
+    static int batch(int sizeClass, int level) {
+        return sizeClass * ALPHA_LEVELS + level;
+    }
+
+    private static int alphaLevel(float alpha) {
+        int level = (int) ((alpha - MIN_ALPHA) * ALPHA_LEVELS / (150 - MIN_ALPHA));
+        return Math.max(0, Math.min(ALPHA_LEVELS - 1, level));
+    }
+
+    /** Counting-sorts live particles into draw batches. */
+    void prepareBatches() {
+        for (int b = 0; b < BATCHES; b++) {
+            batchFill[b] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            batchFill[batch(sizeClass[i], alphaLevel(alpha[i]))]++;
+        }
+        batchStart[0] = 0;
+        for (int b = 0; b < BATCHES; b++) {
+            batchStart[b + 1] = batchStart[b] + batchFill[b];
+            batchFill[b] = batchStart[b];
+        }
+        for (int i = 0; i < count; i++) {
+            int slot = batchFill[batch(sizeClass[i], alphaLevel(alpha[i]))]++;
+            points[slot * 2] = x[i];
+            points[slot * 2 + 1] = y[i];
+        }
+    }
+
+    float[] points() {
+        return points;
+    }
+
+    /** First particle of batch {@code b} in points(), in particles not floats. */
+    int batchStart(int b) {
+        return batchStart[b];
+    }
+
+    int batchCount(int b) {
+        return batchStart[b + 1] - batchStart[b];
+    }
+}
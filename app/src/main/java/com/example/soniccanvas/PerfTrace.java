@@ -0,0 +1,240 @@
+package com.example.soniccanvas;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Always-on binary recorder of pipeline timings for field diagnostics.
+ *
+ * Stages append fixed-size records (timestamp, stage, duration, buffer
+ * fill, dropped frames) to a preallocated in-memory ring, which costs a
+ * clock read and a few array stores under an uncontended lock. A daemon
+ * thread copies whatever is new to a direct buffer and writes it out
+ * through a FileChannel every couple of seconds, rotating between
+ * trace-0.bin (current) and trace-1.bin (previous) once a file is full.
+ * If the flusher falls a whole ring behind, the oldest records are lost
+ * and the gap shows up in the record sequence numbers.
+ *
+ * File layout, big-endian: a HEADER_BYTES header (magic, version, record
+ * size, wall-clock millis and nanoTime at creation), then RECORD_BYTES
+ * records of timestamp nanos (long), duration nanos (int), stage (short),
+ * buffer fill (short), dropped (int) and sequence (int). PerfTraceDecoder,
+ * under tools/perf-trace, turns a file into a timeline and per-stage summary.
+ */
+public final class PerfTrace {
+    private static final String TAG = "SonicCanvas";
+
+    static final int MAGIC = 0x53435054; // "SCPT"
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int RECORD_BYTES = 24;
+    static final String CURRENT_FILE = "trace-0.bin";
+    static final String PREVIOUS_FILE = "trace-1.bin";
+
+    /** One microphone read handed to listeners; fill is frames read, dropped is reads lost to a full pool. */
+    public static final int STAGE_MIC_READ = 1;
+    /** One output-mix waveform callback; fill is frames delivered. */
+    public static final int STAGE_DEVICE_CAPTURE = 2;
+    /** Analysis and renderer fan-out; fill is pooled frames in use, dropped is 1 when the pool was exhausted. */
+    public static final int STAGE_ANALYSIS = 3;
+    /** One visualizer draw; fill is panes drawn, dropped is display frames missed since the last animating draw. */
+    public static final int STAGE_DRAW = 4;
+
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final long DEFAULT_MAX_FILE_BYTES = 1 << 20;
+    private static final long FLUSH_INTERVAL_MS = 2000;
+
+    private static volatile PerfTrace installed;
+
+    private final File directory;
+    private final int capacity;
+    private final int mask;
+    private final long maxFileBytes;
+    // Guarded by this: appended to by any thread, drained by the flusher
+    private final ByteBuffer ring;
+    private final ByteBuffer ringView;
+    private long written = 0;
+    private long flushed = 0;
+    // Only touched while holding fileLock
+    private final Object fileLock = new Object();
+    private final ByteBuffer staging;
+    private FileChannel channel;
+    private long fileBytes;
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Creates the process-wide trace in {@code directory} on first use and
+     * starts flushing it; later calls return the same instance.
+     */
+    static synchronized PerfTrace install(File directory) {
+        if (installed == null) {
+            PerfTrace trace = new PerfTrace(directory, DEFAULT_CAPACITY, DEFAULT_MAX_FILE_BYTES);
+            trace.start();
+            installed = trace;
+        }
+        return installed;
+    }
+
+    static PerfTrace installed() {
+        return installed;
+    }
+
+    /** Records a stage that began at {@code startNanos} and ends now; a no-op until installed. */
+    public static void record(int stage, long startNanos, int bufferFill, int dropped) {
+        PerfTrace trace = installed;
+        if (trace != null) {
+            long now = System.nanoTime();
+            trace.append(now, stage, now - startNanos, bufferFill, dropped);
+        }
+    }
+
+    /** @param capacity records held in memory between flushes, a power of two */
+    PerfTrace(File directory, int capacity, long maxFileBytes) {
+        if (capacity < 1 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.directory = directory;
+        this.capacity = capacity;
+        this.maxFileBytes = maxFileBytes;
+        mask = capacity - 1;
+        ring = ByteBuffer.allocate(capacity * RECORD_BYTES);
+        ringView = ring.duplicate();
+        staging = ByteBuffer.allocateDirect(capacity * RECORD_BYTES);
+    }
+
+    synchronized void append(long timestampNanos, int stage, long durationNanos, int bufferFill, int dropped) {
+        int at = (int) (written & mask) * RECORD_BYTES;
+        ring.putLong(at, timestampNanos);
+        ring.putInt(at + 8, (int) Math.min(durationNanos, Integer.MAX_VALUE));
+        ring.putShort(at + 12, (short) stage);
+        ring.putShort(at + 14, (short) Math.max(0, Math.min(bufferFill, Short.MAX_VALUE)));
+        ring.putInt(at + 16, dropped);
+        ring.putInt(at + 20, (int) written);
+        written++;
+    }
+
+    /** Records appended so far, including any lost to overruns. */
+    synchronized long written() {
+        return written;
+    }
+
+    /** Starts the periodic flush on a daemon thread. */
+    void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "PerfTraceFlush");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Flushes soon on the flush thread, e.g. before the process may be killed. */
+    void requestFlush() {
+        if (flusher != null) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing performance trace: " + e.getMessage());
+        }
+    }
+
+    /** Writes everything appended since the last flush and rotates the file when it is full. */
+    void flush() throws IOException {
+        synchronized (fileLock) {
+            staging.clear();
+            synchronized (this) {
+                // Records overwritten before we got to them are skipped; their sequence numbers are missing
+                long from = Math.max(flushed, written - capacity);
+                copy(from, written);
+                flushed = written;
+            }
+            staging.flip();
+            if (!staging.hasRemaining()) return;
+
+            if (channel == null || fileBytes + staging.remaining() > maxFileBytes) {
+                rotate();
+            }
+            while (staging.hasRemaining()) {
+                fileBytes += channel.write(staging);
+            }
+        }
+    }
+
+    // Copies records [from, to) out of the ring, in up to two runs around the wrap
+    private void copy(long from, long to) {
+        while (from < to) {
+            int start = (int) (from & mask);
+            int count = (int) Math.min(to - from, capacity - start);
+            ringView.limit((start + count) * RECORD_BYTES).position(start * RECORD_BYTES);
+            staging.put(ringView);
+            from += count;
+        }
+    }
+
+    // Keeps the previous file and starts a new one with a fresh header
+    private void rotate() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File current = new File(directory, CURRENT_FILE);
+        File previous = new File(directory, PREVIOUS_FILE);
+        if (current.exists()) {
+            if (previous.exists() && !previous.delete()) {
+                throw new IOException("Cannot delete " + previous);
+            }
+            if (!current.renameTo(previous)) {
+                throw new IOException("Cannot rotate " + current);
+            }
+        }
+        channel = new FileOutputStream(current).getChannel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) RECORD_BYTES)
+                .putLong(System.currentTimeMillis())
+                .putLong(System.nanoTime());
+        header.clear();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        fileBytes = HEADER_BYTES;
+    }
+
+    /** Stops the flusher and writes out what is left. */
+    void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flusher = null;
+        }
+        synchronized (fileLock) {
+            flush();
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.soniccanvas;
+
+/**
+ * Runs YIN on the capture thread at the capture hop rate.
+ *
+ * Keeps the last WINDOW_SIZE samples and re-detects on every frame that
+ * arrives, so the UI thread only reads the latest result. Does nothing
+ * while disabled, so it costs nothing unless tuner mode is showing.
+ */
+public class PitchTracker implements CaptureController.Listener {
+    private static final int WINDOW_SIZE = 2048;
+
+    private final YinPitchDetector detector = new YinPitchDetector(WINDOW_SIZE);
+    private final float[] history = new float[WINDOW_SIZE];
+    // Capture thread only
+    private int filled = 0;
+
+    private volatile boolean enabled = false;
+    // Set from other threads; the capture thread clears the history when it sees it
+    private volatile boolean resetRequested = false;
+    private volatile float frequency = -1;
+    private volatile float probability = 0;
+
+    public void setEnabled(boolean enabled) {
+        if (enabled) {
+            // Samples from before the tracker was switched off are not continuous with the next ones
+            resetRequested = true;
+        } else {
+            frequency = -1;
+            probability = 0;
+        }
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Latest fundamental in Hz, or -1 when unvoiced. */
+    public float getFrequency() {
+        return frequency;
+    }
+
+    public float getProbability() {
+        return probability;
+    }
+
+    @Override
+    public void onAudioData(float magnitude, float[] data, int size, int sampleRate) {
+        if (!enabled) return;
+        // Slide the history left and append the new frame
+        int keep = Math.max(0, WINDOW_SIZE - size);
+        System.arraycopy(history, WINDOW_SIZE - keep, history, 0, keep);
+        int copy = Math.min(size, WINDOW_SIZE);
+        System.arraycopy(data, size - copy, history, keep, copy);
+        detect(size, sampleRate);
+    }
+
+    @Override
+    public void onAudioBuffer(float magnitude, AudioBuffer buffer, int sampleRate) {
+        if (enabled) {
+            int size = buffer.size();
+            int keep = Math.max(0, WINDOW_SIZE - size);
+            System.arraycopy(history, WINDOW_SIZE - keep, history, 0, keep);
+            int copy = Math.min(size, WINDOW_SIZE);
+            for (int i = 0; i < copy; i++) {
+                history[keep + i] = buffer.sample(size - copy + i);
+            }
+            detect(size, sampleRate);
+        }
+        buffer.release();
+    }
+
+    private void detect(int size, int sampleRate) {
+        if (resetRequested) {
+            // Only the frame just appended belongs to the new stream
+            resetRequested = false;
+            filled = 0;
+        }
+        filled = Math.min(WINDOW_SIZE, filled + size);
+        if (filled < WINDOW_SIZE) return;
+        float detected = detector.detect(history, 0, sampleRate);
+        probability = detector.probability();
+        frequency = detected;
+    }
+
+    @Override
+    public void onStateChanged(CaptureController.State state, CaptureController.Source source) {
+        if (state != CaptureController.State.RUNNING) {
+            // A new stream must not be analysed together with the tail of the old one
+            resetRequested = true;
+            frequency = -1;
+            probability = 0;
+        }
+    }
+
+    @Override
+    public void onError(CaptureController.Source source, String message) {
+    }
+}
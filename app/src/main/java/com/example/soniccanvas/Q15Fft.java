@@ -0,0 +1,126 @@
+package com.example.soniccanvas;
+
+/**
+ * Integer-only radix-2 FFT on Q15 data with block floating-point scaling.
+ *
+ * Values are kept within 16 bits: the input block is shifted up to use the
+ * available headroom, and any stage whose butterflies could overflow shifts
+ * the whole block down as it loads it. The block peak is tracked as the OR
+ * of all magnitudes, which is cheap and exact to the bit. The shifts are
+ * returned as one shared exponent, so quiet input keeps its precision
+ * instead of being scaled down unconditionally at every stage.
+ */
+final class Q15Fft {
+    // Each stage starts with the block peak below 2^13, so the up to 1 + √2
+    // growth of a butterfly stays within 16 bits
+    private static final int BLOCK_BITS = 13;
+
+    private final int n;
+    private final int[] bitReverse;
+    private final int[] cos;
+    private final int[] sin;
+
+    Q15Fft(int n) {
+        if (n < 2 || (n & (n - 1)) != 0) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + n);
+        }
+        this.n = n;
+        bitReverse = new int[n];
+        int bits = Integer.numberOfTrailingZeros(n);
+        for (int i = 0; i < n; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        cos = new int[n / 2];
+        sin = new int[n / 2];
+        for (int i = 0; i < n / 2; i++) {
+            double angle = -2 * Math.PI * i / n;
+            cos[i] = toQ15(Math.cos(angle));
+            sin[i] = toQ15(Math.sin(angle));
+        }
+    }
+
+    static int toQ15(double value) {
+        return (int) Math.max(-32768, Math.min(32767, Math.round(value * 32768)));
+    }
+
+    int size() {
+        return n;
+    }
+
+    /**
+     * In-place forward transform of 16-bit values held in int arrays.
+     *
+     * @return block exponent e: the true spectrum is the result times 2^e
+     */
+    int forward(int[] re, int[] im) {
+        int bits = 0;
+        for (int i = 0; i < n; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                int t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+            bits |= magnitudeBits(re[i]) | magnitudeBits(im[i]);
+        }
+        if (bits == 0) return 0;
+
+        int exponent = 0;
+        int up = BLOCK_BITS - bitLength(bits);
+        if (up > 0) {
+            for (int i = 0; i < n; i++) {
+                re[i] <<= up;
+                im[i] <<= up;
+            }
+            bits <<= up;
+            exponent -= up;
+        }
+
+        for (int size = 2; size <= n; size <<= 1) {
+            // The block shift is folded into the butterfly loads rather than a separate pass
+            int shift = Math.max(0, bitLength(bits) - BLOCK_BITS);
+            int round = shift > 0 ? 1 << (shift - 1) : 0;
+            exponent += shift;
+
+            bits = 0;
+            int half = size >> 1;
+            int step = n / size;
+            for (int start = 0; start < n; start += size) {
+                for (int k = 0; k < half; k++) {
+                    int wr = cos[k * step];
+                    int wi = sin[k * step];
+                    int a = start + k;
+                    int b = a + half;
+                    int xr = (re[b] + round) >> shift;
+                    int xi = (im[b] + round) >> shift;
+                    int tr = (xr * wr - xi * wi + 16384) >> 15;
+                    int ti = (xr * wi + xi * wr + 16384) >> 15;
+                    int ar = (re[a] + round) >> shift;
+                    int ai = (im[a] + round) >> shift;
+                    int br = ar - tr;
+                    int bi = ai - ti;
+                    ar += tr;
+                    ai += ti;
+                    re[a] = ar;
+                    im[a] = ai;
+                    re[b] = br;
+                    im[b] = bi;
+                    bits |= magnitudeBits(ar) | magnitudeBits(ai) | magnitudeBits(br) | magnitudeBits(bi);
+                }
+            }
+        }
+        return exponent;
+    }
+
+    // |x| for positive x and |x| - 1 for negative; ORed together these bound the block peak
+    private static int magnitudeBits(int x) {
+        return x ^ (x >> 31);
+    }
+
+    private static int bitLength(int bits) {
+        return 32 - Integer.numberOfLeadingZeros(bits);
+    }
+}
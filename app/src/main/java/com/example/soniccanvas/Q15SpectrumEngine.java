@@ -0,0 +1,102 @@
+package com.example.soniccanvas;
+
+/**
+ * Fixed-point engine for devices where float DSP is the bottleneck.
+ *
+ * Works on 16-bit PCM as read from AudioRecord: a Q15 window table, the
+ * block floating-point Q15Fft, an alpha-max-plus-beta-min magnitude
+ * (within 4% of the true value) and integer band sums. Float appears only
+ * in the final per-band scale.
+ */
+final class Q15SpectrumEngine implements SpectrumEngine {
+    // |z| ≈ 0.96043·max(|re|, |im|) + 0.39782·min(|re|, |im|), in Q15
+    private static final int ALPHA = 31470;
+    private static final int BETA = 13036;
+
+    private final int n;
+    private final Q15Fft fft;
+    private WindowFunction windowFunction;
+    private int[] window;
+    // 2 / Σw with Q15 undone; the block exponent is applied per call
+    private float scale;
+    private final int[] re;
+    private final int[] im;
+
+    Q15SpectrumEngine(int fftSize) {
+        n = fftSize;
+        fft = new Q15Fft(fftSize);
+        re = new int[fftSize];
+        im = new int[fftSize];
+        setWindow(WindowFunction.HANN);
+    }
+
+    @Override
+    public void setWindow(WindowFunction window) {
+        if (window == windowFunction) return;
+        windowFunction = window;
+        int[] table = new int[n];
+        long sum = 0;
+        for (int i = 0; i < n; i++) {
+            table[i] = Q15Fft.toQ15(window.value(i, n));
+            sum += table[i];
+        }
+        // The sum of the quantised table, so the scale matches what the FFT actually saw
+        scale = 2f / (sum / 32768f) / 32768f;
+        this.window = table;
+    }
+
+    @Override
+    public WindowFunction window() {
+        return windowFunction;
+    }
+
+    @Override
+    public int fftSize() {
+        return n;
+    }
+
+    @Override
+    public void analyze(short[] samples, int offset, BandLayout layout, float[] outBands) {
+        for (int i = 0; i < n; i++) {
+            re[i] = samples[offset + i];
+        }
+        transform(layout, outBands);
+    }
+
+    /** Quantises to Q15 first, for frames that did not come from 16-bit capture. */
+    @Override
+    public void analyze(float[] samples, int offset, BandLayout layout, float[] outBands) {
+        for (int i = 0; i < n; i++) {
+            re[i] = Math.max(-32768, Math.min(32767, (int) (samples[offset + i] * 32768f)));
+        }
+        transform(layout, outBands);
+    }
+
+    private void transform(BandLayout layout, float[] outBands) {
+        // Scale quiet blocks up before windowing so the window's rounding does not swamp them
+        int peak = 0;
+        for (int i = 0; i < n; i++) {
+            peak |= re[i] ^ (re[i] >> 31);
+        }
+        int up = peak == 0 ? 0 : Math.max(0, 14 - (32 - Integer.numberOfLeadingZeros(peak)));
+        for (int i = 0; i < n; i++) {
+            re[i] = ((re[i] << up) * window[i] + 16384) >> 15;
+            im[i] = 0;
+        }
+
+        int exponent = fft.forward(re, im) - up;
+        // Undo the block exponent, then the same window scale as the float engine
+        float scale = Math.scalb(this.scale, exponent);
+        for (int b = 0; b < layout.numBands(); b++) {
+            int sum = 0;
+            for (int k = layout.start(b), end = layout.end(b); k < end; k++) {
+                int x = Math.abs(re[k]);
+                int y = Math.abs(im[k]);
+                int max = Math.max(x, y);
+                int min = Math.min(x, y);
+                sum += (max * ALPHA + min * BETA) >> 15;
+            }
+            outBands[b] = sum * scale;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.soniccanvas;
+
+import android.graphics.Canvas;
+
+/**
+ * One visualization style.
+ *
+ * Static geometry is rebuilt in setSize() (and when the frame length
+ * changes). onFrame() runs at the analysis hop rate and only maps the
+ * shared AnalysisFrame to targets; draw() runs at the display rate and
+ * scales precomputed values.
+ */
+public interface Renderer {
+    void setSize(int width, int height);
+
+    /** {@code frame} stays valid until the next onFrame() or clear(); retain it to keep it longer. */
+    void onFrame(AnalysisFrame frame);
+
+    /**
+     * Draws the frame for {@code frameTimeNanos}.
+     *
+     * @return true while the output is still animating towards the last targets
+     */
+    boolean draw(Canvas canvas, long frameTimeNanos);
+
+    void clear();
+}
@@ -0,0 +1,47 @@
+package com.example.soniccanvas;
+
+/**
+ * Mean absolute amplitude over equal slices of a frame, one per band.
+ *
+ * The time-domain stand-in for spectrum bands when no spectrum is being
+ * computed. Slice bounds are cached per frame length.
+ */
+final class SampleBands {
+    private final int numBands;
+    private final int[] sampleStart;
+    private final int[] sampleEnd;
+    private int mappedSize = -1;
+
+    SampleBands(int numBands) {
+        this.numBands = numBands;
+        sampleStart = new int[numBands];
+        sampleEnd = new int[numBands];
+    }
+
+    int numBands() {
+        return numBands;
+    }
+
+    private void mapSamples(int dataSize) {
+        if (dataSize == mappedSize) return;
+        int dataPerBand = Math.max(1, dataSize / numBands);
+        for (int i = 0; i < numBands; i++) {
+            sampleStart[i] = Math.min(i * dataPerBand, dataSize);
+            sampleEnd[i] = Math.min((i + 1) * dataPerBand, dataSize);
+        }
+        mappedSize = dataSize;
+    }
+
+    void compute(SampleSource samples, float[] outBands) {
+        mapSamples(samples.size());
+        for (int i = 0; i < numBands; i++) {
+            int start = sampleStart[i];
+            int end = sampleEnd[i];
+            float sum = 0;
+            for (int j = start; j < end; j++) {
+                sum += Math.abs(samples.sample(j));
+            }
+            outBands[i] = end > start ? sum / (end - start) : 0;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.soniccanvas;
+
+/**
+ * Read-only view of one captured frame, normalised to [-1, 1].
+ */
+public interface SampleSource {
+    int size();
+
+    float sample(int i);
+}
@@ -0,0 +1,170 @@
+package com.example.soniccanvas;
+
+/**
+ * Streaming short-time Fourier transform with a fixed hop.
+ *
+ * Samples go into a mirrored ring: each one is written at i and i + n, so
+ * the latest n samples always sit contiguously at the write position and
+ * the engine reads each frame straight out of the ring. Overlapping frames
+ * share their samples instead of sliding a window array along.
+ *
+ * A spectrum is produced every hop samples once the ring is full, however
+ * the input is chunked: a 4096-sample read at 75% overlap of 1024 yields
+ * 16 spectra, and four 256-sample reads yield one. The ring holds 16-bit
+ * samples for the fixed-point engine and floats otherwise, so neither
+ * engine converts formats per frame.
+ */
+public final class SlidingStft {
+    /** Frame overlap; the hop is the FFT size divided by {@code divisor}. */
+    public enum Overlap {
+        NONE(1),
+        HALF(2),
+        THREE_QUARTERS(4);
+
+        final int divisor;
+
+        Overlap(int divisor) {
+            this.divisor = divisor;
+        }
+    }
+
+    /** Called on the writing thread for every spectrum; {@code bands} is reused. */
+    interface Listener {
+        void onSpectrum(float[] bands);
+    }
+
+    private final SpectrumEngine engine;
+    private final boolean pcm;
+    private final int n;
+    private final int mask;
+    private final float[] floatRing;
+    private final short[] pcmRing;
+    private final float[] bands;
+    private final Listener listener;
+    private BandLayout layout;
+    private Overlap overlap = Overlap.HALF;
+    private int hop;
+    private int writePosition = 0;
+    private int filled = 0;
+    private int sinceFrame = 0;
+    private long frames = 0;
+
+    /**
+     * @param pcm keep the history as 16-bit samples, for engines that work on PCM
+     */
+    SlidingStft(SpectrumEngine engine, boolean pcm, int numBands, Listener listener) {
+        this.engine = engine;
+        this.pcm = pcm;
+        this.listener = listener;
+        n = engine.fftSize();
+        mask = n - 1;
+        floatRing = pcm ? null : new float[2 * n];
+        pcmRing = pcm ? new short[2 * n] : null;
+        bands = new float[numBands];
+        hop = n / overlap.divisor;
+    }
+
+    SpectrumEngine engine() {
+        return engine;
+    }
+
+    /** Sets the bin grouping; must match the sample rate of what is written next. */
+    void setLayout(BandLayout layout) {
+        this.layout = layout;
+    }
+
+    BandLayout layout() {
+        return layout;
+    }
+
+    /** Takes effect from the next frame; the history is kept. */
+    void setOverlap(Overlap overlap) {
+        this.overlap = overlap;
+        hop = n / overlap.divisor;
+    }
+
+    Overlap overlap() {
+        return overlap;
+    }
+
+    int hopSize() {
+        return hop;
+    }
+
+    /** Spectra produced since construction. */
+    long frames() {
+        return frames;
+    }
+
+    /** Forgets the history, so a new stream is not analysed with the tail of the old one. */
+    void reset() {
+        writePosition = 0;
+        filled = 0;
+        sinceFrame = 0;
+    }
+
+    void write(float[] samples, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            float x = samples[offset + i];
+            if (pcm) {
+                store(toPcm16(x));
+            } else {
+                store(x);
+            }
+        }
+    }
+
+    void write(short[] samples, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            short x = samples[offset + i];
+            if (pcm) {
+                store(x);
+            } else {
+                store(x / 32768f);
+            }
+        }
+    }
+
+    void write(SampleSource samples) {
+        for (int i = 0, size = samples.size(); i < size; i++) {
+            float x = samples.sample(i);
+            if (pcm) {
+                store(toPcm16(x));
+            } else {
+                store(x);
+            }
+        }
+    }
+
+    static short toPcm16(float sample) {
+        return (short) Math.max(-32768, Math.min(32767, (int) (sample * 32768f)));
+    }
+
+    private void store(float x) {
+        floatRing[writePosition] = x;
+        floatRing[writePosition + n] = x;
+        advance();
+    }
+
+    private void store(short x) {
+        pcmRing[writePosition] = x;
+        pcmRing[writePosition + n] = x;
+        advance();
+    }
+
+    private void advance() {
+        writePosition = (writePosition + 1) & mask;
+        if (filled < n) filled++;
+        if (++sinceFrame >= hop && filled == n) {
+            sinceFrame = 0;
+            // The oldest sample is at the write position, the newest n - 1 after it
+            if (pcm) {
+                engine.analyze(pcmRing, writePosition, layout, bands);
+            } else {
+                engine.analyze(floatRing, writePosition, layout, bands);
+            }
+            frames++;
+            listener.onSpectrum(bands);
+        }
+    }
+}
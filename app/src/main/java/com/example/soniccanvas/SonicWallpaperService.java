@@ -0,0 +1,190 @@
+package com.example.soniccanvas;
+
+import android.content.SharedPreferences;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.SurfaceHolder;
+import android.service.wallpaper.WallpaperService;
+
+import java.io.File;
+
+/**
+ * Live wallpaper driven by the output-mix Visualizer.
+ *
+ * Reuses VisualizerRenderer and paces itself by loudness: full frame rate
+ * while audio is above QUIET_LOUDNESS, a few frames per second when it is
+ * quiet, and nothing at all (capture stopped too) while not visible.
+ */
+public class SonicWallpaperService extends WallpaperService {
+    private static final String TAG = "SonicCanvas";
+    static final String PREFS_NAME = "soniccanvas";
+    static final String PREF_VISUALIZER_TYPE = "visualizer_type";
+
+    private static final long ACTIVE_FRAME_INTERVAL = 16;
+    private static final long QUIET_FRAME_INTERVAL = 250;
+    // Raw loudness (before gain, 0..1) below which the scene is treated as silent
+    private static final float QUIET_LOUDNESS = 0.002f;
+    // Only the waveform, bars and circular modes make sense as a wallpaper
+    static final int WALLPAPER_TYPES = 3;
+
+    @Override
+    public Engine onCreateEngine() {
+        return new SonicEngine();
+    }
+
+    private class SonicEngine extends Engine implements CaptureController.Listener {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        private final int backgroundColor = Color.parseColor("#121212");
+        private CaptureController captureController;
+        private VisualizerRenderer renderer;
+        private boolean visible = false;
+        private boolean frameScheduled = false;
+
+        private final Runnable drawFrame = new Runnable() {
+            @Override
+            public void run() {
+                frameScheduled = false;
+                if (!visible) return;
+                drawFrame();
+                scheduleFrame();
+            }
+        };
+
+        // Posted from the capture thread so the renderer is only touched on the main thread
+        private final AudioFrameSlot audioSlot = new AudioFrameSlot();
+        private final AudioFrameSlot.Consumer applyFrame = new AudioFrameSlot.Consumer() {
+            @Override
+            public void onAudioData(float magnitude, float[] data, int size, int sampleRate) {
+                renderer.setSampleRate(sampleRate);
+                renderer.update(magnitude, data, size);
+                // Wake straight up from the quiet rate when sound comes back
+                if (visible && renderer.getLoudness() >= QUIET_LOUDNESS && frameScheduled) {
+                    handler.removeCallbacks(drawFrame);
+                    frameScheduled = false;
+                    scheduleFrame();
+                }
+            }
+
+            @Override
+            public void onAudioBuffer(float magnitude, AudioBuffer buffer, int sampleRate) {
+                // Output-mix capture always delivers heap frames
+                buffer.release();
+            }
+        };
+        private final Runnable applyAudio = new Runnable() {
+            @Override
+            public void run() {
+                audioSlot.apply(applyFrame);
+            }
+        };
+
+        @Override
+        public void onCreate(SurfaceHolder surfaceHolder) {
+            super.onCreate(surfaceHolder);
+            PerfTrace.install(new File(getFilesDir(), CaptureViewModel.PERF_TRACE_DIRECTORY));
+            renderer = new VisualizerRenderer(SonicWallpaperService.this);
+            captureController = new CaptureController(SonicWallpaperService.this);
+            // A wallpaper must never fall back to recording the microphone
+            captureController.setMicrophoneAllowed(false);
+            captureController.setSource(CaptureController.Source.DEVICE_AUDIO);
+            captureController.addListener(this);
+        }
+
+        @Override
+        public void onDestroy() {
+            super.onDestroy();
+            visible = false;
+            handler.removeCallbacks(drawFrame);
+            handler.removeCallbacks(applyAudio);
+            captureController.removeListener(this);
+            captureController.release();
+            renderer.clear();
+        }
+
+        @Override
+        public void onVisibilityChanged(boolean visible) {
+            this.visible = visible;
+            if (visible) {
+                SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+                int type = prefs.getInt(PREF_VISUALIZER_TYPE, 1);
+                renderer.setVisualizerType(type >= 0 && type < WALLPAPER_TYPES ? type : 1);
+                captureController.start();
+                scheduleFrame();
+            } else {
+                // Zero frames and no capture while hidden
+                handler.removeCallbacks(drawFrame);
+                frameScheduled = false;
+                captureController.stop();
+            }
+        }
+
+        @Override
+        public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+            super.onSurfaceChanged(holder, format, width, height);
+            renderer.setSize(width, height);
+            if (visible) {
+                drawFrame();
+            }
+        }
+
+        @Override
+        public void onSurfaceDestroyed(SurfaceHolder holder) {
+            super.onSurfaceDestroyed(holder);
+            visible = false;
+            handler.removeCallbacks(drawFrame);
+            frameScheduled = false;
+        }
+
+        private void scheduleFrame() {
+            if (frameScheduled || !visible) return;
+            frameScheduled = true;
+            boolean loud = renderer.getLoudness() >= QUIET_LOUDNESS;
+            handler.postDelayed(drawFrame, loud ? ACTIVE_FRAME_INTERVAL : QUIET_FRAME_INTERVAL);
+        }
+
+        private void drawFrame() {
+            SurfaceHolder holder = getSurfaceHolder();
+            Canvas canvas = null;
+            try {
+                canvas = holder.lockHardwareCanvas();
+                if (canvas == null) return;
+                canvas.drawColor(backgroundColor);
+                renderer.draw(canvas, System.nanoTime());
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Error drawing wallpaper frame: " + e.getMessage());
+            } finally {
+                if (canvas != null) {
+                    holder.unlockCanvasAndPost(canvas);
+                }
+            }
+        }
+
+        @Override
+        public void onAudioData(float magnitude, float[] data, int size, int sampleRate) {
+            if (audioSlot.offer(magnitude, data, size, sampleRate)) {
+                handler.post(applyAudio);
+            }
+        }
+
+        @Override
+        public void onAudioBuffer(float magnitude, AudioBuffer buffer, int sampleRate) {
+            // Output-mix capture always delivers heap frames
+            buffer.release();
+        }
+
+        @Override
+        public void onStateChanged(CaptureController.State state, CaptureController.Source source) {
+            if (state == CaptureController.State.IDLE || state == CaptureController.State.ERROR) {
+                handler.post(renderer::clear);
+            }
+        }
+
+        @Override
+        public void onError(CaptureController.Source source, String message) {
+            Log.e(TAG, "Wallpaper capture error (" + source + "): " + message);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.soniccanvas;
+
+/**
+ * Windowed FFT, magnitude and band summation over one window of samples.
+ *
+ * Band values are summed bin amplitudes, scaled by the window's coherent
+ * gain so a full-scale sine peaks at 1 in its centre bin; the band sum is
+ * about 2 with Hann, whose main lobe spans three bins, and a little more
+ * with the wider Blackman-Harris lobe. Implementations reuse their work
+ * arrays and do not allocate per call.
+ */
+interface SpectrumEngine {
+    int fftSize();
+
+    /** Rebuilds the window table; takes effect from the next analysis. */
+    void setWindow(WindowFunction window);
+
+    WindowFunction window();
+
+    /** Analyses {@code fftSize()} 16-bit samples starting at {@code offset}. */
+    void analyze(short[] samples, int offset, BandLayout layout, float[] outBands);
+
+    /** Analyses {@code fftSize()} samples in -1..1 starting at {@code offset}. */
+    void analyze(float[] samples, int offset, BandLayout layout, float[] outBands);
+}
@@ -0,0 +1,167 @@
+package com.example.soniccanvas;
+
+/**
+ * Computes spectrum bands on the capture thread with either engine.
+ *
+ * Capture frames feed a SlidingStft, which produces a spectrum every hop
+ * whatever size the device reads in, so the band rate is set by the
+ * overlap rather than by the capture buffer. The fixed-point engine takes
+ * 16-bit mic frames straight from onPcm16, so nothing is converted to float
+ * on the way in; frames from float capture or the output mix are quantised
+ * instead. The engine, window and overlap can be switched at any time and
+ * apply from the next capture frame; switching engine restarts the history
+ * in the new engine's sample format.
+ */
+public class SpectrumTracker implements CaptureController.Listener {
+    static final int FFT_SIZE = 1024;
+
+    private final int numBands;
+    private final SlidingStft.Listener publisher = this::publish;
+    private final SlidingStft floatStft;
+    private final SlidingStft fixedStft;
+    // Handed to the UI thread under the lock
+    private final float[] published;
+    // Capture thread only
+    private SlidingStft active;
+    // Set by onPcm16 so the float copy of the same frame is skipped
+    private boolean pcmDelivered = false;
+
+    private volatile boolean enabled = false;
+    // Set from other threads; the capture thread restarts the history when it sees it
+    private volatile boolean resetRequested = false;
+    private volatile boolean fixedPoint = false;
+    private volatile WindowFunction window = WindowFunction.HANN;
+    private volatile SlidingStft.Overlap overlap = SlidingStft.Overlap.HALF;
+    private boolean hasBands = false;
+
+    public SpectrumTracker(int numBands) {
+        this.numBands = numBands;
+        published = new float[numBands];
+        floatStft = new SlidingStft(new FloatSpectrumEngine(FFT_SIZE), false, numBands, publisher);
+        fixedStft = new SlidingStft(new Q15SpectrumEngine(FFT_SIZE), true, numBands, publisher);
+    }
+
+    public void setEnabled(boolean enabled) {
+        if (enabled) resetRequested = true;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Selects the Q15 engine; takes effect from the next frame. */
+    public void setFixedPoint(boolean fixedPoint) {
+        this.fixedPoint = fixedPoint;
+    }
+
+    public boolean isFixedPoint() {
+        return fixedPoint;
+    }
+
+    public void setWindow(WindowFunction window) {
+        this.window = window;
+    }
+
+    public WindowFunction getWindow() {
+        return window;
+    }
+
+    public void setOverlap(SlidingStft.Overlap overlap) {
+        this.overlap = overlap;
+    }
+
+    public SlidingStft.Overlap getOverlap() {
+        return overlap;
+    }
+
+    public int numBands() {
+        return numBands;
+    }
+
+    /**
+     * Copies the latest bands into {@code out}.
+     *
+     * @return false if no window has been analysed yet
+     */
+    public synchronized boolean copyBands(float[] out) {
+        if (!hasBands) return false;
+        System.arraycopy(published, 0, out, 0, numBands);
+        return true;
+    }
+
+    @Override
+    public void onPcm16(short[] data, int size, int sampleRate) {
+        if (!enabled || !fixedPoint) return;
+        consumeReset();
+        pcmDelivered = true;
+        prepare(true, sampleRate).write(data, 0, size);
+    }
+
+    @Override
+    public void onAudioData(float magnitude, float[] data, int size, int sampleRate) {
+        if (pcmDelivered) {
+            pcmDelivered = false;
+            return;
+        }
+        if (!enabled) return;
+        consumeReset();
+        prepare(fixedPoint, sampleRate).write(data, 0, size);
+    }
+
+    @Override
+    public void onAudioBuffer(float magnitude, AudioBuffer buffer, int sampleRate) {
+        if (enabled) {
+            consumeReset();
+            prepare(fixedPoint, sampleRate).write(buffer);
+        }
+        buffer.release();
+    }
+
+    // A frame starting a new stream must not be analysed together with the tail of the old one
+    private void consumeReset() {
+        if (!resetRequested) return;
+        resetRequested = false;
+        active = null;
+        pcmDelivered = false;
+    }
+
+    // Applies pending settings and restarts the history when the engine or sample rate changes under it
+    private SlidingStft prepare(boolean fixed, int sampleRate) {
+        SlidingStft stft = fixed ? fixedStft : floatStft;
+        if (stft != active) {
+            active = stft;
+            stft.reset();
+        }
+        BandLayout layout = stft.layout();
+        if (layout == null || layout.sampleRate() != sampleRate) {
+            stft.setLayout(new BandLayout(FFT_SIZE, sampleRate, numBands));
+            stft.reset();
+        }
+        stft.engine().setWindow(window);
+        stft.setOverlap(overlap);
+        return stft;
+    }
+
+    private void publish(float[] bands) {
+        synchronized (this) {
+            System.arraycopy(bands, 0, published, 0, numBands);
+            hasBands = true;
+        }
+    }
+
+    @Override
+    public void onStateChanged(CaptureController.State state, CaptureController.Source source) {
+        if (state != CaptureController.State.RUNNING) {
+            // Runs on the capture control thread; the next frame restarts the history
+            resetRequested = true;
+            synchronized (this) {
+                hasBands = false;
+            }
+        }
+    }
+
+    @Override
+    public void onError(CaptureController.Source source, String message) {
+    }
+}
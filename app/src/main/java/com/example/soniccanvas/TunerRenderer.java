@@ -0,0 +1,123 @@
+package com.example.soniccanvas;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+/**
+ * Shows the detected note, its frequency and a cents meter.
+ *
+ * Pitch itself comes from PitchTracker on the capture thread via the
+ * analysis frame; this only eases the needle between detections.
+ */
+public class TunerRenderer implements Renderer {
+    private static final float NEEDLE_ATTACK_MS = 60f;
+    private static final float NEEDLE_RELEASE_MS = 60f;
+    // Detections below this YIN confidence leave the display unchanged
+    private static final float MIN_PROBABILITY = 0.8f;
+
+    private final Paint notePaint;
+    private final Paint textPaint;
+    private final Paint meterPaint;
+    private final BandSmoother needle = new BandSmoother(1, NEEDLE_ATTACK_MS, NEEDLE_RELEASE_MS);
+    private final float[] needleTarget = new float[1];
+    // "1234.5 Hz" formatted in place so drawing does not allocate
+    private final char[] frequencyText = new char[16];
+    private int frequencyLength = 0;
+    private int width;
+    private int height;
+    private int note = -1;
+
+    public TunerRenderer(int color) {
+        notePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        notePaint.setColor(color);
+        notePaint.setTextAlign(Paint.Align.CENTER);
+        notePaint.setTypeface(Typeface.DEFAULT_BOLD);
+
+        textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        textPaint.setColor(color);
+        textPaint.setAlpha(180);
+        textPaint.setTextAlign(Paint.Align.CENTER);
+
+        meterPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        meterPaint.setColor(color);
+        meterPaint.setStrokeCap(Paint.Cap.ROUND);
+    }
+
+    @Override
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        notePaint.setTextSize(Math.min(width, height) * 0.3f);
+        textPaint.setTextSize(Math.min(width, height) * 0.07f);
+    }
+
+    @Override
+    public void onFrame(AnalysisFrame frame) {
+        float frequency = frame.pitch();
+        if (frequency <= 0 || frame.pitchProbability() < MIN_PROBABILITY) return;
+
+        note = NoteNames.nearestNote(frequency);
+        needleTarget[0] = NoteNames.cents(frequency);
+        needle.setTargets(needleTarget);
+        frequencyLength = formatFrequency(frequency, frequencyText);
+    }
+
+    @Override
+    public void clear() {
+        note = -1;
+        needle.reset();
+    }
+
+    @Override
+    public boolean draw(Canvas canvas, long frameTimeNanos) {
+        float centerX = width / 2f;
+        float meterY = height * 0.78f;
+        float meterHalf = width * 0.4f;
+
+        // Meter scale: centre tick and the ±50 cent ends
+        meterPaint.setAlpha(90);
+        meterPaint.setStrokeWidth(4f);
+        canvas.drawLine(centerX - meterHalf, meterY, centerX + meterHalf, meterY, meterPaint);
+        canvas.drawLine(centerX, meterY - 24, centerX, meterY + 24, meterPaint);
+
+        if (note < 0) {
+            notePaint.setAlpha(60);
+            canvas.drawText("--", centerX, height * 0.5f, notePaint);
+            return false;
+        }
+
+        boolean animating = needle.advance(frameTimeNanos);
+        float cents = needle.value(0);
+        float needleX = centerX + cents / 50f * meterHalf;
+        // Fully opaque when in tune, fading as it drifts
+        int alpha = 255 - (int) (Math.min(Math.abs(cents), 50f) * 3);
+        notePaint.setAlpha(alpha);
+        canvas.drawText(NoteNames.name(note), centerX, height * 0.5f, notePaint);
+        canvas.drawText(frequencyText, 0, frequencyLength, centerX, height * 0.62f, textPaint);
+
+        meterPaint.setAlpha(255);
+        meterPaint.setStrokeWidth(8f);
+        canvas.drawLine(needleX, meterY - 40, needleX, meterY + 40, meterPaint);
+        return animating;
+    }
+
+    // Writes e.g. "440.0 Hz" into out and returns its length
+    static int formatFrequency(float frequency, char[] out) {
+        int tenths = Math.round(frequency * 10f);
+        int whole = tenths / 10;
+        int length = 0;
+        int digits = whole == 0 ? 1 : (int) Math.log10(whole) + 1;
+        for (int i = digits - 1; i >= 0; i--) {
+            out[length + i] = (char) ('0' + whole % 10);
+            whole /= 10;
+        }
+        length += digits;
+        out[length++] = '.';
+        out[length++] = (char) ('0' + tenths % 10);
+        out[length++] = ' ';
+        out[length++] = 'H';
+        out[length++] = 'z';
+        return length;
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.soniccanvas;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import androidx.core.content.ContextCompat;
+
+/**
+ * Draws the waveform, bars, circular, tuner and notes visualizations onto
+ * any Canvas, one at a time or several side by side in split mode.
+ *
+ * Each audio frame is analysed once by FrameAnalyzer into an immutable,
+ * pooled AnalysisFrame that is handed to every visible renderer, so a
+ * split view costs extra draw time but no extra analysis. Holds no View,
+ * so the same code backs VisualizerView and the live wallpaper. Not thread
+ * safe: update and draw from the same thread.
+ */
+public class VisualizerRenderer {
+    public static final int WAVEFORM_TYPE = 0;
+    public static final int BARS_TYPE = 1;
+    public static final int CIRCULAR_TYPE = 2;
+    public static final int TUNER_TYPE = 3;
+    public static final int NOTES_TYPE = 4;
+    // Waveform, bars and circular at once
+    public static final int SPLIT_TYPE = 5;
+    private static final int[] SPLIT_PANES = {WAVEFORM_TYPE, BARS_TYPE, CIRCULAR_TYPE};
+    private static final int PANE_GAP = 16;
+    // Nominal display frame for counting missed frames in the trace
+    private static final long DISPLAY_FRAME_NANOS = CaptureController.VISUALIZATION_INTERVAL * 1_000_000L;
+
+    private final Renderer[] renderers;
+    private final FrameAnalyzer analyzer = new FrameAnalyzer();
+    private FrameStreamer frameStreamer;
+    private int width;
+    private int height;
+    private int visualizerType = WAVEFORM_TYPE;
+    // Renderer index and pane origin for everything currently on screen
+    private final int[] visible = new int[SPLIT_PANES.length];
+    private final int[] paneLeft = new int[SPLIT_PANES.length];
+    private final int[] paneTop = new int[SPLIT_PANES.length];
+    private int paneWidth;
+    private int paneHeight;
+    private int visibleCount = 1;
+    // The latest frame, held until the next one replaces it
+    private AnalysisFrame frame;
+    private int sampleRate = 44100;
+    private long lastDrawNanos;
+    private boolean lastDrawAnimating = false;
+
+    public VisualizerRenderer(Context context) {
+        // Use themed colors
+        renderers = new Renderer[] {
+                new WaveformRenderer(ContextCompat.getColor(context, R.color.visualizer_waveform)),
+                new BarsRenderer(ContextCompat.getColor(context, R.color.visualizer_bars)),
+                new CircularRenderer(ContextCompat.getColor(context, R.color.visualizer_circular)),
+                new TunerRenderer(ContextCompat.getColor(context, R.color.visualizer_tuner)),
+                new NotesRenderer(ContextCompat.getColor(context, R.color.visualizer_notes))
+        };
+        layoutPanes();
+    }
+
+    public void setSampleRate(int sampleRate) {
+        if (sampleRate > 0) {
+            this.sampleRate = sampleRate;
+        }
+    }
+
+    /** Source of pitch for the tuner; without one the tuner shows no note. */
+    public void setPitchTracker(PitchTracker pitchTracker) {
+        analyzer.setPitchTracker(pitchTracker);
+    }
+
+    /** Spectrum source for the bars; without one they show sample averages. */
+    public void setSpectrumTracker(SpectrumTracker spectrumTracker) {
+        analyzer.setSpectrumTracker(spectrumTracker);
+    }
+
+    /** Also sends every analysed frame to external displays; null to stop. */
+    public void setFrameStreamer(FrameStreamer frameStreamer) {
+        this.frameStreamer = frameStreamer;
+    }
+
+    /** Rebuilds cached geometry, but only when the size actually changes. */
+    public void setSize(int width, int height) {
+        if (width == this.width && height == this.height) return;
+        this.width = width;
+        this.height = height;
+        layoutPanes();
+    }
+
+    public int getVisualizerType() {
+        return visualizerType;
+    }
+
+    public void setVisualizerType(int type) {
+        int newType = type >= 0 && type <= SPLIT_TYPE ? type : WAVEFORM_TYPE;
+        if (newType == visualizerType) return;
+        visualizerType = newType;
+        layoutPanes();
+        analyzer.setNotesEnabled(newType == NOTES_TYPE);
+        // Only visible renderers see frames, so prime the new ones with the current frame
+        if (frame != null) {
+            for (int i = 0; i < visibleCount; i++) {
+                renderers[visible[i]].onFrame(frame);
+            }
+        }
+    }
+
+    // Split mode stacks the panes along the longer side
+    private void layoutPanes() {
+        if (visualizerType != SPLIT_TYPE) {
+            visibleCount = 1;
+            visible[0] = visualizerType;
+            paneLeft[0] = 0;
+            paneTop[0] = 0;
+            paneWidth = width;
+            paneHeight = height;
+        } else {
+            visibleCount = SPLIT_PANES.length;
+            boolean stacked = height >= width;
+            int gaps = PANE_GAP * (visibleCount - 1);
+            paneWidth = stacked ? width : Math.max(0, (width - gaps) / visibleCount);
+            paneHeight = stacked ? Math.max(0, (height - gaps) / visibleCount) : height;
+            for (int i = 0; i < visibleCount; i++) {
+                visible[i] = SPLIT_PANES[i];
+                paneLeft[i] = stacked ? 0 : i * (paneWidth + PANE_GAP);
+                paneTop[i] = stacked ? i * (paneHeight + PANE_GAP) : 0;
+            }
+        }
+        for (int i = 0; i < visibleCount; i++) {
+            renderers[visible[i]].setSize(paneWidth, paneHeight);
+        }
+    }
+
+    /** Latest frame level after gain, 0..1. */
+    public float getLevel() {
+        return frame != null ? frame.level() : 0;
+    }
+
+    /** Latest frame loudness before gain, 0..1, for callers that pace drawing by loudness. */
+    public float getLoudness() {
+        return frame != null ? frame.loudness() : 0;
+    }
+
+    public void update(float magnitude, float[] data, int size) {
+        long start = System.nanoTime();
+        publish(analyzer.analyze(magnitude, data, size, sampleRate), start);
+    }
+
+    /**
+     * Zero-copy variant: the caller has already retained {@code buffer} on our
+     * behalf, and it is released along with the frame that holds it.
+     */
+    public void update(float magnitude, AudioBuffer buffer) {
+        long start = System.nanoTime();
+        publish(analyzer.analyze(magnitude, buffer, sampleRate), start);
+    }
+
+    private void publish(AnalysisFrame next, long start) {
+        // Every frame is still held somewhere; keep showing the current one
+        if (next == null) {
+            PerfTrace.record(PerfTrace.STAGE_ANALYSIS, start, analyzer.framesInUse(), 1);
+            return;
+        }
+        releaseFrame();
+        frame = next;
+        for (int i = 0; i < visibleCount; i++) {
+            renderers[visible[i]].onFrame(next);
+        }
+        if (frameStreamer != null) {
+            frameStreamer.offer(next);
+        }
+        PerfTrace.record(PerfTrace.STAGE_ANALYSIS, start, analyzer.framesInUse(), 0);
+    }
+
+    public void releaseFrame() {
+        if (frame != null) {
+            frame.release();
+            frame = null;
+        }
+    }
+
+    public void clear() {
+        for (Renderer renderer : renderers) {
+            renderer.clear();
+        }
+        releaseFrame();
+        analyzer.reset();
+    }
+
+    /**
+     * Draws the frame for {@code frameTimeNanos}; smoothing is driven by
+     * this clock, not by how often new audio arrives.
+     *
+     * @return true while the visualization is still settling and wants another frame
+     */
+    public boolean draw(Canvas canvas, long frameTimeNanos) {
+        long start = System.nanoTime();
+        boolean animating = false;
+        if (visibleCount == 1) {
+            animating = renderers[visible[0]].draw(canvas, frameTimeNanos);
+        } else {
+            for (int i = 0; i < visibleCount; i++) {
+                canvas.save();
+                canvas.translate(paneLeft[i], paneTop[i]);
+                canvas.clipRect(0, 0, paneWidth, paneHeight);
+                animating |= renderers[visible[i]].draw(canvas, frameTimeNanos);
+                canvas.restore();
+            }
+        }
+        // Only a draw that asked for the next one can have missed display frames
+        int missed = 0;
+        if (lastDrawAnimating) {
+            missed = (int) Math.max(0, (frameTimeNanos - lastDrawNanos) / DISPLAY_FRAME_NANOS - 1);
+        }
+        lastDrawNanos = frameTimeNanos;
+        lastDrawAnimating = animating;
+        PerfTrace.record(PerfTrace.STAGE_DRAW, start, visibleCount, missed);
+        return animating;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.soniccanvas;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+public class WaveformRenderer implements Renderer {
+    private static final int MAX_POINTS = 128;
+    // Add amplitude limiter to prevent extreme values
+    private static final float MAX_AMPLITUDE = 0.8f;
+
+    private final Paint paint;
+    private final Path path = new Path();
+    private int width;
+    private int height;
+    // The raw waveform is drawn as-is, so the latest frame is kept by reference
+    private AnalysisFrame frame;
+
+    public WaveformRenderer(int color) {
+        paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(color);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+    }
+
+    @Override
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public void onFrame(AnalysisFrame frame) {
+        this.frame = frame;
+    }
+
+    @Override
+    public void clear() {
+        frame = null;
+    }
+
+    @Override
+    public boolean draw(Canvas canvas, long frameTimeNanos) {
+        if (frame == null) return false;
+        int size = frame.size();
+        if (size == 0) return false;
+        float sensitivity = frame.gain();
+
+        // Decimate to roughly 22 kHz so the visible time span is the same at any capture rate
+        int stride = Math.max(1, Math.round(frame.sampleRate() / 22050f));
+        int numPoints = Math.min(size / stride, MAX_POINTS);
+        if (numPoints == 0) return false;
+        float xIncrement = width / (float) numPoints;
+        float yMid = height / 2f;
+        float halfHeight = height / 2f;
+        float x = 0;
+
+        path.rewind();
+        for (int i = 0; i < numPoints; i++) {
+            // Apply sensitivity multiplier but limit amplitude
+            float amplitude = frame.sample(i * stride) * sensitivity;
+            amplitude = Math.max(-MAX_AMPLITUDE, Math.min(amplitude, MAX_AMPLITUDE));
+            float y = yMid - amplitude * halfHeight;
+
+            if (i == 0) {
+                path.moveTo(x, y);
+            } else {
+                path.lineTo(x, y);
+            }
+            x += xIncrement;
+        }
+
+        paint.setStrokeWidth(4f);
+        paint.setAlpha(255);
+        canvas.drawPath(path, paint);
+
+        // Add glow effect
+        paint.setStrokeWidth(2f);
+        paint.setAlpha(80); // Semi-transparent
+        canvas.drawPath(path, paint);
+        return false;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.soniccanvas;
+
+/**
+ * Analysis windows for the spectrum engines, as generalised cosine sums.
+ *
+ * Hann is the general-purpose default. Hamming trades a slightly narrower
+ * main lobe for sidelobes that never fall away. Blackman-Harris has the
+ * widest main lobe but sidelobes below -92 dB, so a loud bass note no
+ * longer bleeds into the treble bands. Tables are periodic (divided by n
+ * rather than n - 1), which is what overlapped STFT frames want.
+ */
+public enum WindowFunction {
+    HANN(0.5, 0.5, 0, 0),
+    HAMMING(0.54, 0.46, 0, 0),
+    BLACKMAN_HARRIS(0.35875, 0.48829, 0.14128, 0.01168);
+
+    private final double a0;
+    private final double a1;
+    private final double a2;
+    private final double a3;
+
+    WindowFunction(double a0, double a1, double a2, double a3) {
+        this.a0 = a0;
+        this.a1 = a1;
+        this.a2 = a2;
+        this.a3 = a3;
+    }
+
+    double value(int i, int n) {
+        double x = 2 * Math.PI * i / n;
+        return a0 - a1 * Math.cos(x) + a2 * Math.cos(2 * x) - a3 * Math.cos(3 * x);
+    }
+
+    /** Precomputes the {@code n}-point window; engines build this once per window change. */
+    float[] table(int n) {
+        float[] table = new float[n];
+        for (int i = 0; i < n; i++) {
+            table[i] = (float) value(i, n);
+        }
+        return table;
+    }
+
+    /** Coherent gain times n: what a DC input of 1 sums to after windowing. */
+    static double sum(float[] table) {
+        double sum = 0;
+        for (float w : table) {
+            sum += w;
+        }
+        return sum;
+    }
+}
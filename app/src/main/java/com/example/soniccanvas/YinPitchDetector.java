@@ -0,0 +1,168 @@
+package com.example.soniccanvas;
+
+/**
+ * YIN fundamental-frequency estimator (de Cheveigné and Kawahara).
+ *
+ * The difference function is computed from an FFT cross-correlation in
+ * O(N log N) rather than the direct O(N²) sum: with W = N/2,
+ * d(τ) = e(0) + e(τ) - 2 r(τ), where r is the correlation of the first W
+ * samples with the whole window and e(τ) the energy of W samples starting
+ * at τ. Both real sequences share one complex FFT. All work arrays are
+ * allocated once per window size.
+ */
+final class YinPitchDetector {
+    private static final float MIN_FREQUENCY = 50f;
+    private static final float MAX_FREQUENCY = 1500f;
+    private static final float DEFAULT_THRESHOLD = 0.12f;
+    // Below this mean-square energy the window is treated as silence
+    private static final double SILENCE_ENERGY = 1e-7;
+
+    private final int windowSize;
+    private final int halfWindow;
+    private final Fft fft;
+    private final float[] zRe;
+    private final float[] zIm;
+    private final float[] pRe;
+    private final float[] pIm;
+    private final double[] energy;
+    private final float[] difference;
+    private float threshold = DEFAULT_THRESHOLD;
+    private float probability;
+
+    YinPitchDetector(int windowSize) {
+        this.windowSize = windowSize;
+        halfWindow = windowSize / 2;
+        fft = new Fft(windowSize);
+        zRe = new float[windowSize];
+        zIm = new float[windowSize];
+        pRe = new float[windowSize];
+        pIm = new float[windowSize];
+        energy = new double[windowSize + 1];
+        difference = new float[halfWindow];
+    }
+
+    int windowSize() {
+        return windowSize;
+    }
+
+    void setThreshold(float threshold) {
+        this.threshold = threshold;
+    }
+
+    /** Confidence of the last detection, 1 - d'(τ), or 0 when unvoiced. */
+    float probability() {
+        return probability;
+    }
+
+    /**
+     * Estimates the fundamental of {@code windowSize} samples starting at
+     * {@code offset}.
+     *
+     * @return frequency in Hz, or -1 if no pitch was found
+     */
+    float detect(float[] samples, int offset, int sampleRate) {
+        probability = 0;
+        int w = halfWindow;
+        if (!computeDifference(samples, offset)) {
+            return -1;
+        }
+
+        // Cumulative mean normalised difference, in place
+        float runningSum = 0;
+        difference[0] = 1;
+        for (int tau = 1; tau < w; tau++) {
+            runningSum += difference[tau];
+            difference[tau] = runningSum > 0 ? difference[tau] * tau / runningSum : 1;
+        }
+
+        int minLag = Math.max(2, (int) (sampleRate / MAX_FREQUENCY));
+        int maxLag = Math.min(w - 1, (int) (sampleRate / MIN_FREQUENCY));
+        int tau = -1;
+        for (int t = minLag; t < maxLag; t++) {
+            if (difference[t] < threshold) {
+                // Walk down to the bottom of this dip
+                while (t + 1 < maxLag && difference[t + 1] < difference[t]) {
+                    t++;
+                }
+                tau = t;
+                break;
+            }
+        }
+        if (tau < 0) {
+            return -1;
+        }
+
+        probability = 1 - difference[tau];
+        return sampleRate / refineLag(tau);
+    }
+
+    /**
+     * Fills the raw difference function d(τ) for τ in [0, W).
+     *
+     * @return false if the window is silent and nothing was computed
+     */
+    boolean computeDifference(float[] samples, int offset) {
+        int n = windowSize;
+        int w = halfWindow;
+
+        // Prefix sums of x² give every e(τ) in O(1)
+        energy[0] = 0;
+        for (int i = 0; i < n; i++) {
+            float x = samples[offset + i];
+            energy[i + 1] = energy[i] + x * x;
+        }
+        if (energy[w] / w < SILENCE_ENERGY) {
+            return false;
+        }
+
+        // z = a + i·x, where a is the first W samples zero-padded
+        for (int i = 0; i < n; i++) {
+            float x = samples[offset + i];
+            zRe[i] = i < w ? x : 0f;
+            zIm[i] = x;
+        }
+        fft.forward(zRe, zIm);
+
+        // Split Z into A and X, then P = conj(A)·X is the spectrum of the correlation
+        for (int k = 0; k < n; k++) {
+            int m = (n - k) & (n - 1);
+            float zr = zRe[k];
+            float zi = zIm[k];
+            float mr = zRe[m];
+            float mi = zIm[m];
+            float ar = 0.5f * (zr + mr);
+            float ai = 0.5f * (zi - mi);
+            float xr = 0.5f * (zi + mi);
+            float xi = 0.5f * (mr - zr);
+            pRe[k] = ar * xr + ai * xi;
+            pIm[k] = ar * xi - ai * xr;
+        }
+        fft.inverse(pRe, pIm);
+
+        // W + τ never exceeds N here, so the circular correlation has no wrap-around
+        float scale = 1f / n;
+        double e0 = energy[w];
+        difference[0] = 0;
+        for (int tau = 1; tau < w; tau++) {
+            double et = energy[tau + w] - energy[tau];
+            difference[tau] = (float) (e0 + et - 2.0 * pRe[tau] * scale);
+        }
+        return true;
+    }
+
+    /** Difference values left by the last call, valid until the next one. */
+    float[] difference() {
+        return difference;
+    }
+
+    // Parabolic interpolation around the chosen lag for sub-sample accuracy
+    private float refineLag(int tau) {
+        if (tau < 1 || tau + 1 >= halfWindow) return tau;
+        float s0 = difference[tau - 1];
+        float s1 = difference[tau];
+        float s2 = difference[tau + 1];
+        float denominator = s0 - 2 * s1 + s2;
+        if (denominator == 0) return tau;
+        return tau + 0.5f * (s0 - s2) / denominator;
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.soniccanvas;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Guards the capture-to-draw pipeline against allocating per frame.
+ *
+ * Each test drives one stage with synthetic audio the way the capture and
+ * UI threads do, warms it up so lazy tables and JIT compilation are out of
+ * the way, then counts the bytes this thread allocates over thousands of
+ * frames. The stage passes once a whole window of frames allocates
+ * nothing; anything allocated per frame can never get there.
+ */
+public class AllocationRegressionTest {
+    private static final int WARMUP_FRAMES = 2000;
+    private static final int FRAMES = 5000;
+    // A late JIT recompile can allocate once; per-frame garbage shows up in every window
+    private static final int MAX_WINDOWS = 5;
+    private static final int READ_FRAMES = 960;
+    private static final int MIC_SAMPLE_RATE = 48000;
+    private static final int DEVICE_SAMPLE_RATE = 44100;
+
+    private com.sun.management.ThreadMXBean threads;
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue("Per-thread allocation counters need a HotSpot-style JVM",
+                bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void deviceWaveformPathDoesNotAllocate() {
+        byte[] waveform = new byte[1024];
+        float[][] buffers = new float[3][waveform.length];
+        SpectrumTracker spectrum = new SpectrumTracker(FrameAnalyzer.NUM_BANDS);
+        spectrum.setEnabled(true);
+        FrameAnalyzer analyzer = new FrameAnalyzer();
+        analyzer.setSpectrumTracker(spectrum);
+
+        assertNoAllocation("device waveform", frame -> {
+            fillWaveform(waveform, frame);
+            float[] data = buffers[frame % buffers.length];
+            CaptureController.convertWaveform(waveform, data, waveform.length);
+            float magnitude = CaptureController.calculateMagnitude(data, waveform.length);
+            spectrum.onAudioData(magnitude, data, waveform.length, DEVICE_SAMPLE_RATE);
+            analyzer.analyze(magnitude, data, waveform.length, DEVICE_SAMPLE_RATE).release();
+        });
+    }
+
+    @Test
+    public void microphonePcmPathDoesNotAllocate() {
+        short[] pcm16 = new short[READ_FRAMES];
+        float[][] buffers = new float[3][READ_FRAMES];
+        SpectrumTracker spectrum = new SpectrumTracker(FrameAnalyzer.NUM_BANDS);
+        spectrum.setEnabled(true);
+        spectrum.setFixedPoint(true);
+        spectrum.setOverlap(SlidingStft.Overlap.THREE_QUARTERS);
+        PitchTracker pitch = new PitchTracker();
+        pitch.setEnabled(true);
+        FrameAnalyzer analyzer = new FrameAnalyzer();
+        analyzer.setSpectrumTracker(spectrum);
+        analyzer.setPitchTracker(pitch);
+        analyzer.setNotesEnabled(true);
+
+        assertNoAllocation("microphone pcm16", frame -> {
+            fillPcm(pcm16, frame);
+            float[] buffer = buffers[frame % buffers.length];
+            for (int i = 0; i < READ_FRAMES; i++) {
+                buffer[i] = pcm16[i] / 32768f;
+            }
+            spectrum.onPcm16(pcm16, READ_FRAMES, MIC_SAMPLE_RATE);
+            float magnitude = CaptureController.calculateMagnitude(buffer, READ_FRAMES);
+            spectrum.onAudioData(magnitude, buffer, READ_FRAMES, MIC_SAMPLE_RATE);
+            pitch.onAudioData(magnitude, buffer, READ_FRAMES, MIC_SAMPLE_RATE);
+            analyzer.analyze(magnitude, buffer, READ_FRAMES, MIC_SAMPLE_RATE).release();
+        });
+    }
+
+    @Test
+    public void zeroCopyBufferPathDoesNotAllocate() {
+        AudioBufferPool pool = new AudioBufferPool(4, READ_FRAMES, true);
+        SpectrumTracker spectrum = new SpectrumTracker(FrameAnalyzer.NUM_BANDS);
+        spectrum.setEnabled(true);
+        spectrum.setWindow(WindowFunction.BLACKMAN_HARRIS);
+        PitchTracker pitch = new PitchTracker();
+        pitch.setEnabled(true);
+        FrameAnalyzer analyzer = new FrameAnalyzer();
+        analyzer.setSpectrumTracker(spectrum);
+        analyzer.setPitchTracker(pitch);
+
+        assertNoAllocation("zero-copy buffers", frame -> {
+            AudioBuffer buffer = pool.acquire();
+            buffer.bytes().clear();
+            for (int i = 0; i < READ_FRAMES; i++) {
+                buffer.floatView().put(i, sample(frame * READ_FRAMES + i, MIC_SAMPLE_RATE));
+            }
+            buffer.setSizeInBytes(READ_FRAMES * 4);
+            float magnitude = CaptureController.calculateMagnitude(buffer);
+            // As CaptureController.notifyAudioBuffer: one reference per listener, then ours is dropped
+            buffer.retain();
+            spectrum.onAudioBuffer(magnitude, buffer, MIC_SAMPLE_RATE);
+            buffer.retain();
+            pitch.onAudioBuffer(magnitude, buffer, MIC_SAMPLE_RATE);
+            buffer.retain();
+            AnalysisFrame analysed = analyzer.analyze(magnitude, buffer, MIC_SAMPLE_RATE);
+            buffer.release();
+            analysed.release();
+        });
+        assertEquals(4, pool.available());
+    }
+
+    @Test
+    public void mainThreadHandoffDoesNotAllocate() {
+        float[][] buffers = new float[3][READ_FRAMES];
+        AudioBufferPool pool = new AudioBufferPool(4, READ_FRAMES, true);
+        FrameAnalyzer analyzer = new FrameAnalyzer();
+        AudioFrameSlot slot = new AudioFrameSlot();
+        // As MainActivity: the view analyses whatever reaches the main thread
+        AudioFrameSlot.Consumer view = new AudioFrameSlot.Consumer() {
+            @Override
+            public void onAudioData(float magnitude, float[] data, int size, int sampleRate) {
+                analyzer.analyze(magnitude, data, size, sampleRate).release();
+            }
+
+            @Override
+            public void onAudioBuffer(float magnitude, AudioBuffer buffer, int sampleRate) {
+                analyzer.analyze(magnitude, buffer, sampleRate).release();
+            }
+        };
+
+        assertNoAllocation("main-thread hand-off", frame -> {
+            float[] data = buffers[frame % buffers.length];
+            for (int i = 0; i < READ_FRAMES; i++) {
+                data[i] = sample(frame * READ_FRAMES + i, MIC_SAMPLE_RATE);
+            }
+            slot.offer(0.2f, data, READ_FRAMES, MIC_SAMPLE_RATE);
+            // Every other frame a zero-copy buffer overtakes the heap frame before the post runs
+            if ((frame & 1) == 0) {
+                AudioBuffer buffer = pool.acquire();
+                buffer.bytes().clear();
+                buffer.setSizeInBytes(READ_FRAMES * 4);
+                slot.offer(0.2f, buffer, MIC_SAMPLE_RATE);
+            }
+            slot.apply(view);
+        });
+        assertEquals(4, pool.available());
+    }
+
+    @Test
+    public void renderGeometryDoesNotAllocate() {
+        int width = 1080;
+        int height = 1920;
+        FrameAnalyzer analyzer = new FrameAnalyzer();
+        float[] data = new float[READ_FRAMES];
+        float[] bands = new float[FrameAnalyzer.NUM_BANDS];
+        float[] heights = new float[FrameAnalyzer.NUM_BANDS];
+        BarGeometry bars = new BarGeometry(FrameAnalyzer.NUM_BANDS);
+        bars.setSize(width, height);
+        BandSmoother smoother = new BandSmoother(FrameAnalyzer.NUM_BANDS, 40, 300);
+        CircleGeometry circle = new CircleGeometry(180);
+        circle.setSize(width, height);
+        float[] offsets = new float[180];
+        float[] points = new float[360];
+        ParticleSystem particles = new ParticleSystem(600, 60, new Random(1));
+
+        assertNoAllocation("render geometry", frame -> {
+            for (int i = 0; i < READ_FRAMES; i++) {
+                data[i] = sample(frame * READ_FRAMES + i, MIC_SAMPLE_RATE);
+            }
+            AnalysisFrame analysed = analyzer.analyze(0.2f, data, READ_FRAMES, MIC_SAMPLE_RATE);
+            for (int b = 0; b < bands.length; b++) {
+                bands[b] = analysed.band(b);
+            }
+            bars.computeBandHeights(bands, 2.5f, heights);
+            smoother.setTargets(heights);
+            smoother.advance(frame * 16_666_667L);
+            circle.computeOffsets(analysed, analysed.gain(), 150f, offsets);
+            circle.project(offsets, points);
+            particles.setEnergy(analysed.level());
+            particles.update(1 / 60f, width, height);
+            particles.prepareBatches();
+            analysed.release();
+        });
+    }
+
+    @Test
+    public void perfTraceRecordingDoesNotAllocate() throws java.io.IOException {
+        java.io.File directory = java.nio.file.Files.createTempDirectory("perf-trace").toFile();
+        PerfTrace trace = new PerfTrace(directory, 1024, 1 << 20);
+
+        assertNoAllocation("perf trace", frame -> {
+            long start = System.nanoTime();
+            trace.append(start, PerfTrace.STAGE_ANALYSIS, System.nanoTime() - start, frame & 3, 0);
+            trace.append(start, PerfTrace.STAGE_DRAW, System.nanoTime() - start, 1, 0);
+        });
+        trace.close();
+        for (java.io.File file : directory.listFiles()) {
+            assertTrue(file.delete());
+        }
+        assertTrue(directory.delete());
+    }
+
+    private void assertNoAllocation(String stage, IntConsumer frame) {
+        int next = 0;
+        for (; next < WARMUP_FRAMES; next++) {
+            frame.accept(next);
+        }
+        long thread = Thread.currentThread().getId();
+        // Whatever reading the counter costs is taken off the total
+        long overhead = -threads.getThreadAllocatedBytes(thread) + threads.getThreadAllocatedBytes(thread);
+        long allocated = Long.MAX_VALUE;
+        for (int window = 0; window < MAX_WINDOWS && allocated > 0; window++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < FRAMES; i++) {
+                frame.accept(next++);
+            }
+            allocated = Math.max(0, threads.getThreadAllocatedBytes(thread) - before - overhead);
+        }
+        assertEquals(stage + " allocated " + allocated + " bytes over " + FRAMES + " frames in steady state",
+                0, allocated);
+    }
+
+    private static float sample(int i, int sampleRate) {
+        double t = (double) i / sampleRate;
+        return (float) (0.3 * Math.sin(2 * Math.PI * 196 * t) + 0.1 * Math.sin(2 * Math.PI * 2637 * t));
+    }
+
+    private static void fillWaveform(byte[] waveform, int frame) {
+        for (int i = 0; i < waveform.length; i++) {
+            waveform[i] = (byte) (128 + Math.round(127 * sample(frame * waveform.length + i, DEVICE_SAMPLE_RATE)));
+        }
+    }
+
+    private static void fillPcm(short[] pcm16, int frame) {
+        for (int i = 0; i < pcm16.length; i++) {
+            pcm16[i] = SlidingStft.toPcm16(sample(frame * pcm16.length + i, MIC_SAMPLE_RATE));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.soniccanvas;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AudioFrameSlotTest {
+    private static final int FRAMES = 256;
+
+    private static final class Recorder implements AudioFrameSlot.Consumer {
+        float[] data;
+        AudioBuffer buffer;
+        float magnitude;
+        int calls = 0;
+
+        @Override
+        public void onAudioData(float magnitude, float[] data, int size, int sampleRate) {
+            this.magnitude = magnitude;
+            this.data = data;
+            calls++;
+        }
+
+        @Override
+        public void onAudioBuffer(float magnitude, AudioBuffer buffer, int sampleRate) {
+            this.magnitude = magnitude;
+            this.buffer = buffer;
+            calls++;
+        }
+    }
+
+    @Test
+    public void latestFrameWinsWithOnePost() {
+        AudioFrameSlot slot = new AudioFrameSlot();
+        float[] first = new float[FRAMES];
+        float[] second = new float[FRAMES];
+        assertTrue(slot.offer(0.1f, first, FRAMES, 48000));
+        assertFalse(slot.offer(0.2f, second, FRAMES, 48000));
+
+        Recorder recorder = new Recorder();
+        assertTrue(slot.apply(recorder));
+        assertEquals(1, recorder.calls);
+        assertSame(second, recorder.data);
+        assertEquals(0.2f, recorder.magnitude, 0f);
+        assertFalse(slot.apply(recorder));
+        // Applied, so the next frame needs a new post
+        assertTrue(slot.offer(0.3f, first, FRAMES, 48000));
+    }
+
+    @Test
+    public void replacedBufferIsReleased() {
+        AudioBufferPool pool = new AudioBufferPool(2, FRAMES, true);
+        AudioFrameSlot slot = new AudioFrameSlot();
+        AudioBuffer first = pool.acquire();
+        AudioBuffer second = pool.acquire();
+        assertTrue(slot.offer(0.1f, first, 48000));
+        assertFalse(slot.offer(0.2f, second, 48000));
+        assertEquals(1, pool.available());
+
+        Recorder recorder = new Recorder();
+        slot.apply(recorder);
+        assertSame(second, recorder.buffer);
+        recorder.buffer.release();
+        assertEquals(2, pool.available());
+    }
+
+    @Test
+    public void clearReleasesPendingBuffer() {
+        AudioBufferPool pool = new AudioBufferPool(1, FRAMES, true);
+        AudioFrameSlot slot = new AudioFrameSlot();
+        slot.offer(0.1f, pool.acquire(), 48000);
+        slot.clear();
+        assertEquals(1, pool.available());
+        assertFalse(slot.apply(new Recorder()));
+    }
+}
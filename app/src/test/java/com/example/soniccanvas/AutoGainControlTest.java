@@ -0,0 +1,70 @@
+package com.example.soniccanvas;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AutoGainControlTest {
+
+    @Test
+    public void p2Quantile_tracksExactQuantile() {
+        Random random = new Random(42);
+        double[] values = new double[20000];
+        P2Quantile p90 = new P2Quantile(0.9);
+        P2Quantile p10 = new P2Quantile(0.1);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.abs(random.nextGaussian());
+            p90.add(values[i]);
+            p10.add(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values[(int) (0.9 * values.length)], p90.estimate(), 0.03);
+        assertEquals(values[(int) (0.1 * values.length)], p10.estimate(), 0.03);
+    }
+
+    @Test
+    public void p2Quantile_handlesFewSamples() {
+        P2Quantile median = new P2Quantile(0.5);
+        assertEquals(0.0, median.estimate(), 0.0);
+        median.add(3);
+        median.add(1);
+        median.add(2);
+        assertEquals(2.0, median.estimate(), 0.0);
+    }
+
+    private static float feed(AutoGainControl agc, float level, int frames, Random random) {
+        float gain = agc.gain();
+        for (int i = 0; i < frames; i++) {
+            // Speech-like: mostly near the level with quieter gaps
+            float loudness = level * (random.nextFloat() < 0.2f ? 0.2f : 0.6f + 0.4f * random.nextFloat());
+            gain = agc.process(loudness);
+        }
+        return gain;
+    }
+
+    @Test
+    public void gain_normalisesQuietAndLoudRooms() {
+        Random random = new Random(7);
+        AutoGainControl quiet = new AutoGainControl();
+        AutoGainControl loud = new AutoGainControl();
+        float quietGain = feed(quiet, 0.01f, 1200, random);
+        float loudGain = feed(loud, 0.5f, 1200, random);
+
+        // Both rooms' loud end lands near the same display level
+        assertEquals(0.25f, 0.01f * quietGain, 0.06f);
+        assertEquals(0.25f, 0.5f * loudGain, 0.06f);
+    }
+
+    @Test
+    public void gain_followsChangeInLevel() {
+        Random random = new Random(11);
+        AutoGainControl agc = new AutoGainControl();
+        feed(agc, 0.5f, 1200, random);
+        // A quieter scene is picked up within the estimator window
+        float gain = feed(agc, 0.05f, 1200, random);
+        assertEquals(0.25f, 0.05f * gain, 0.06f);
+    }
+}
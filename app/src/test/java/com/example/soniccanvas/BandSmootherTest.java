@@ -0,0 +1,74 @@
+package com.example.soniccanvas;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BandSmootherTest {
+    private static final long MS = 1_000_000L;
+
+    private static float runFor(BandSmoother smoother, long durationMs, long frameMs) {
+        long t = 1;
+        smoother.advance(t);
+        for (long elapsed = 0; elapsed < durationMs; elapsed += frameMs) {
+            t += frameMs * MS;
+            smoother.advance(t);
+        }
+        return smoother.value(0);
+    }
+
+    @Test
+    public void release_isIndependentOfFrameRate() {
+        float[] full = {100f};
+        float[] silent = {0f};
+
+        BandSmoother at120Hz = new BandSmoother(1, 0f, 200f);
+        at120Hz.setTargets(full);
+        at120Hz.advance(1);
+        at120Hz.setTargets(silent);
+
+        BandSmoother at30Hz = new BandSmoother(1, 0f, 200f);
+        at30Hz.setTargets(full);
+        at30Hz.advance(1);
+        at30Hz.setTargets(silent);
+
+        // Zero attack jumps straight to the target; then decay for 256 ms at two display rates
+        float fast = runFor(at120Hz, 256, 8);
+        float slow = runFor(at30Hz, 256, 32);
+        assertEquals(100f * (float) Math.exp(-256.0 / 200.0), fast, 0.5f);
+        assertEquals(fast, slow, 0.5f);
+    }
+
+    @Test
+    public void attack_isFasterThanRelease() {
+        BandSmoother smoother = new BandSmoother(1, 10f, 300f);
+        smoother.setTargets(new float[] {100f});
+        float rise = runFor(smoother, 30, 8);
+        assertTrue("rise " + rise, rise > 90f);
+
+        smoother.setTargets(new float[] {0f});
+        float fall = runFor(smoother, 30, 8);
+        assertTrue("fall " + fall, fall > 80f);
+    }
+
+    @Test
+    public void peak_holdsThenFalls() {
+        BandSmoother smoother = new BandSmoother(1, 0f, 0f);
+        smoother.setPeakHold(100f, 1000f);
+        smoother.setTargets(new float[] {100f});
+        smoother.advance(1);
+        assertEquals(100f, smoother.peak(0), 0f);
+
+        smoother.setTargets(new float[] {0f});
+        long t = 1 + 50 * MS;
+        assertTrue(smoother.advance(t));
+        assertEquals(100f, smoother.peak(0), 0f);
+
+        // Past the hold the cap falls at 1000 units/s, i.e. 50 units in 50 ms
+        t += 60 * MS;
+        smoother.advance(t);
+        t += 50 * MS;
+        smoother.advance(t);
+        assertEquals(50f, smoother.peak(0), 1f);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.soniccanvas;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BeatDetectorTest {
+    private static final int BANDS = FrameAnalyzer.NUM_BANDS;
+    private static final long FRAME_NANOS = 16_666_667L;
+
+    @Test
+    public void periodicClicksAreBeats() {
+        BeatDetector detector = new BeatDetector(BANDS);
+        Random random = new Random(7);
+        float[] bands = new float[BANDS];
+        int beats = 0;
+        // A click every half second over quiet noise
+        for (int frame = 0; frame < 600; frame++) {
+            boolean click = frame % 30 == 0;
+            for (int i = 0; i < BANDS; i++) {
+                bands[i] = click ? 0.8f : 0.02f * random.nextFloat();
+            }
+            boolean beat = detector.process(bands, frame * FRAME_NANOS);
+            if (frame >= 60) {
+                assertEquals("frame " + frame, click, beat);
+                if (beat) assertTrue(detector.strength() > 1);
+            }
+            if (beat) beats++;
+        }
+        assertTrue(beats >= 18);
+    }
+
+    @Test
+    public void steadyNoiseAndSilenceAreNotBeats() {
+        BeatDetector detector = new BeatDetector(BANDS);
+        Random random = new Random(11);
+        float[] bands = new float[BANDS];
+        for (int frame = 0; frame < 600; frame++) {
+            for (int i = 0; i < BANDS; i++) {
+                bands[i] = frame < 300 ? 0 : 0.3f + 0.0001f * random.nextFloat();
+            }
+            // The step into the noise is allowed one onset
+            if (frame != 300) {
+                assertFalse("frame " + frame, detector.process(bands, frame * FRAME_NANOS));
+                assertEquals(0, detector.strength(), 0);
+            } else {
+                detector.process(bands, frame * FRAME_NANOS);
+            }
+        }
+    }
+
+    @Test
+    public void closeOnsetsAreDebounced() {
+        BeatDetector detector = new BeatDetector(BANDS);
+        float[] bands = new float[BANDS];
+        for (int frame = 0; frame < 60; frame++) {
+            detector.process(bands, frame * FRAME_NANOS);
+        }
+        // Two hits 100 ms apart
+        int beats = 0;
+        for (int frame = 60; frame < 80; frame++) {
+            float value = frame == 60 || frame == 66 ? 1 : 0;
+            for (int i = 0; i < BANDS; i++) {
+                bands[i] = value;
+            }
+            if (detector.process(bands, frame * FRAME_NANOS)) beats++;
+        }
+        assertEquals(1, beats);
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.soniccanvas;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.pm.PackageManager;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CaptureControllerTest {
+    // What building a recorder or Visualizer costs in these tests
+    private static final long BUILD_MILLIS = 100;
+
+    /** Context that answers permission checks and nothing else. */
+    private static final class PermissionContext extends ContextWrapper {
+        private final boolean granted;
+
+        PermissionContext(boolean granted) {
+            super(null);
+            this.granted = granted;
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            return this;
+        }
+
+        @Override
+        public int checkPermission(String permission, int pid, int uid) {
+            return granted ? PackageManager.PERMISSION_GRANTED : PackageManager.PERMISSION_DENIED;
+        }
+    }
+
+    private static class RecordingListener implements CaptureController.Listener {
+        final CountDownLatch failed = new CountDownLatch(1);
+        volatile CaptureController.Source errorSource;
+        volatile String errorMessage;
+        volatile int errors = 0;
+
+        @Override
+        public void onAudioData(float magnitude, float[] data, int size, int sampleRate) {
+        }
+
+        @Override
+        public void onAudioBuffer(float magnitude, AudioBuffer buffer, int sampleRate) {
+            buffer.release();
+        }
+
+        @Override
+        public void onStateChanged(CaptureController.State state, CaptureController.Source source) {
+            if (state == CaptureController.State.ERROR) failed.countDown();
+        }
+
+        @Override
+        public void onError(CaptureController.Source source, String message) {
+            errorSource = source;
+            errorMessage = message;
+            errors++;
+        }
+    }
+
+    /**
+     * Stands in for the platform sources: building one takes BUILD_MILLIS and
+     * it delivers its first frame as soon as it starts. Without warm standby a
+     * source is only built when started and torn down when stopped, as before
+     * the controller kept one prepared.
+     */
+    private static final class FakeSourceController extends CaptureController {
+        private final boolean warmStandby;
+        // Control thread only
+        private boolean micBuilt = false;
+        private boolean deviceBuilt = false;
+        volatile int builds = 0;
+
+        FakeSourceController(boolean warmStandby) {
+            super(new PermissionContext(true));
+            this.warmStandby = warmStandby;
+        }
+
+        @Override
+        boolean prepareMicrophone() {
+            if (warmStandby) micBuilt = build(micBuilt);
+            return true;
+        }
+
+        @Override
+        boolean startMicrophone() {
+            micBuilt = build(micBuilt);
+            markFirstFrame();
+            return true;
+        }
+
+        @Override
+        void stopMicrophone() {
+            if (!warmStandby) micBuilt = false;
+        }
+
+        @Override
+        void releaseMicrophone() {
+            micBuilt = false;
+        }
+
+        @Override
+        boolean prepareDeviceAudio() {
+            if (warmStandby) deviceBuilt = build(deviceBuilt);
+            return true;
+        }
+
+        @Override
+        boolean startDeviceAudio() {
+            deviceBuilt = build(deviceBuilt);
+            markFirstFrame();
+            return true;
+        }
+
+        @Override
+        void stopDeviceAudio() {
+            if (!warmStandby) deviceBuilt = false;
+        }
+
+        @Override
+        void releaseDeviceAudio() {
+            deviceBuilt = false;
+        }
+
+        private boolean build(boolean built) {
+            if (built) return true;
+            builds++;
+            try {
+                Thread.sleep(BUILD_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }
+    }
+
+    // Starts on the mic, switches to device audio and back, and returns the last switch latency
+    private static long switchTwice(FakeSourceController controller) throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(3);
+        controller.addListener(new RecordingListener() {
+            @Override
+            public void onStateChanged(CaptureController.State state, CaptureController.Source source) {
+                if (state == CaptureController.State.RUNNING) running.countDown();
+            }
+        });
+        controller.start();
+        controller.setSource(CaptureController.Source.DEVICE_AUDIO);
+        controller.setSource(CaptureController.Source.MICROPHONE);
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        assertEquals(CaptureController.Source.MICROPHONE, controller.getSource());
+        return controller.getLastSwitchLatencyNanos();
+    }
+
+    @Test
+    public void coldSwitch_paysForBuildingTheSource() throws InterruptedException {
+        FakeSourceController controller = new FakeSourceController(false);
+        long latency = switchTwice(controller);
+
+        // Every start built its source, and the switch waited for it
+        assertEquals(3, controller.builds);
+        assertTrue("switch latency " + latency / 1000 + " us", latency >= BUILD_MILLIS * 1_000_000L);
+        controller.release();
+    }
+
+    @Test
+    public void warmSwitch_onlyFlipsWhichSourceRuns() throws InterruptedException {
+        FakeSourceController controller = new FakeSourceController(true);
+        long latency = switchTwice(controller);
+
+        // Each source was built once, while the other one was running; neither switch built anything
+        assertEquals(2, controller.builds);
+        assertTrue(latency >= 0);
+        controller.release();
+    }
+
+    @Test
+    public void missingPermission_reachesListenerAndEndsInError() throws InterruptedException {
+        CaptureController controller = new CaptureController(new PermissionContext(false));
+        RecordingListener listener = new RecordingListener();
+        controller.addListener(listener);
+        controller.start();
+
+        assertTrue(listener.failed.await(5, TimeUnit.SECONDS));
+        assertEquals(CaptureController.State.ERROR, controller.getState());
+        assertEquals(1, listener.errors);
+        assertEquals(CaptureController.Source.MICROPHONE, listener.errorSource);
+        assertEquals("Microphone permission required", listener.errorMessage);
+        controller.release();
+    }
+
+    @Test
+    public void disallowedMicrophone_reachesListenerAndEndsInError() throws InterruptedException {
+        CaptureController controller = new CaptureController(new PermissionContext(true));
+        controller.setMicrophoneAllowed(false);
+        RecordingListener listener = new RecordingListener();
+        controller.addListener(listener);
+        controller.start();
+
+        assertTrue(listener.failed.await(5, TimeUnit.SECONDS));
+        assertEquals(CaptureController.State.ERROR, controller.getState());
+        assertEquals(1, listener.errors);
+        assertEquals("AudioRecord failed to initialize.", listener.errorMessage);
+        controller.release();
+    }
+}
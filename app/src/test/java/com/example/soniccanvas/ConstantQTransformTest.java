@@ -0,0 +1,122 @@
+package com.example.soniccanvas;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConstantQTransformTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final float C2 = 65.406f;
+
+    @Test
+    public void binsAreSemitones() {
+        ConstantQTransform cqt = new ConstantQTransform(SAMPLE_RATE, C2, 84);
+        assertEquals(C2, cqt.binFrequency(0), 1e-3f);
+        assertEquals(2 * C2, cqt.binFrequency(12), 1e-3f);
+        // A4 is 33 semitones above C2
+        assertEquals(440f, cqt.binFrequency(33), 0.1f);
+    }
+
+    @Test
+    public void sineLandsInItsBin() {
+        ConstantQTransform cqt = new ConstantQTransform(SAMPLE_RATE, C2, 84);
+        float[] magnitudes = new float[84];
+        int[] bins = {5, 33, 45, 70};
+        for (int bin : bins) {
+            cqt.reset();
+            float[] signal = sine(cqt.binFrequency(bin), 0.5f, cqt.fftSize());
+            cqt.write(signal, 0, signal.length);
+            cqt.transform(magnitudes);
+
+            int loudest = 0;
+            for (int i = 1; i < magnitudes.length; i++) {
+                if (magnitudes[i] > magnitudes[loudest]) loudest = i;
+            }
+            assertEquals(bin, loudest);
+            assertEquals(0.5f, magnitudes[bin], 0.05f);
+            assertTrue(magnitudes[bin - 1] < magnitudes[bin] * 0.6f);
+            assertTrue(magnitudes[bin + 1] < magnitudes[bin] * 0.6f);
+        }
+    }
+
+    @Test
+    public void sparseKernelMatchesTimeDomainTransform() {
+        int numBins = 84;
+        ConstantQTransform cqt = new ConstantQTransform(SAMPLE_RATE, C2, numBins);
+        int n = cqt.fftSize();
+        float[] signal = new float[n];
+        java.util.Random random = new java.util.Random(11);
+        for (int i = 0; i < n; i++) {
+            signal[i] = 0.3f * (float) Math.sin(2 * Math.PI * 196 * i / SAMPLE_RATE)
+                    + 0.2f * (float) Math.sin(2 * Math.PI * 1250 * i / SAMPLE_RATE)
+                    + 0.05f * (random.nextFloat() - 0.5f);
+        }
+        cqt.write(signal, 0, n);
+        float[] magnitudes = new float[numBins];
+        cqt.transform(magnitudes);
+
+        double q = 1.0 / (Math.pow(2.0, 1.0 / 12) - 1.0);
+        for (int k = 0; k < numBins; k++) {
+            double frequency = cqt.binFrequency(k);
+            int length = Math.min(n, (int) Math.ceil(q * SAMPLE_RATE / frequency));
+            int start = n - length;
+            double sumRe = 0;
+            double sumIm = 0;
+            for (int i = 0; i < length; i++) {
+                double window = (0.5 - 0.5 * Math.cos(2 * Math.PI * i / length)) / (length / 2.0);
+                double phase = 2 * Math.PI * frequency * i / SAMPLE_RATE;
+                sumRe += signal[start + i] * window * Math.cos(phase);
+                sumIm -= signal[start + i] * window * Math.sin(phase);
+            }
+            double expected = 2 * Math.hypot(sumRe, sumIm);
+            assertEquals("bin " + k, expected, magnitudes[k], 0.01);
+        }
+    }
+
+    @Test
+    public void rejectsBinsAboveNyquist() {
+        try {
+            new ConstantQTransform(16000, C2, 96);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // 96 bins from C2 reach about 15.8 kHz
+        }
+    }
+
+    @Ignore("Benchmark, run by hand")
+    @Test
+    public void benchmarkKernelSizes() {
+        int[] sampleRates = {44100, 48000};
+        int[] binCounts = {84, 96};
+        for (int sampleRate : sampleRates) {
+            for (int numBins : binCounts) {
+                ConstantQTransform cqt = new ConstantQTransform(sampleRate, C2, numBins);
+                float[] signal = sine(440f, 0.5f, cqt.fftSize());
+                cqt.write(signal, 0, signal.length);
+                float[] magnitudes = new float[numBins];
+                for (int i = 0; i < 50; i++) {
+                    cqt.transform(magnitudes);
+                }
+                int iterations = 200;
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    cqt.transform(magnitudes);
+                }
+                long perFrame = (System.nanoTime() - start) / iterations;
+                long denseBytes = 8L * numBins * (cqt.fftSize() / 2 + 1);
+                System.out.println("Constant-Q " + numBins + " bins @ " + sampleRate + " Hz: FFT " + cqt.fftSize()
+                        + ", " + cqt.nonZeros() + " non-zeros, " + cqt.kernelBytes() / 1024 + " KiB sparse vs "
+                        + denseBytes / 1024 + " KiB dense, " + perFrame + " ns/frame");
+            }
+        }
+    }
+
+    private static float[] sine(float frequency, float amplitude, int length) {
+        float[] samples = new float[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = amplitude * (float) Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE);
+        }
+        return samples;
+    }
+}
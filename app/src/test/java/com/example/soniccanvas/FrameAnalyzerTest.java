@@ -0,0 +1,148 @@
+package com.example.soniccanvas;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameAnalyzerTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int FRAME_SIZE = 768;
+
+    private static float[] sine(float frequency, float amplitude) {
+        float[] data = new float[FRAME_SIZE];
+        for (int i = 0; i < FRAME_SIZE; i++) {
+            data[i] = amplitude * (float) Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE);
+        }
+        return data;
+    }
+
+    @Test
+    public void heapSamplesAreSnapshotted() {
+        FrameAnalyzer analyzer = new FrameAnalyzer();
+        float[] data = sine(440, 0.5f);
+        AnalysisFrame frame = analyzer.analyze(0.3f, data, FRAME_SIZE, SAMPLE_RATE);
+        float before = frame.sample(10);
+        // Capture reuses its arrays; the frame must not see the overwrite
+        data[10] = 0.99f;
+        assertEquals(before, frame.sample(10), 0f);
+        assertEquals(SAMPLE_RATE, frame.sampleRate());
+        assertEquals(FRAME_SIZE, frame.size());
+        frame.release();
+    }
+
+    @Test
+    public void framesAreRecycledWithoutAllocation() {
+        FrameAnalyzer analyzer = new FrameAnalyzer();
+        float[] data = sine(220, 0.2f);
+        AnalysisFrame first = analyzer.analyze(0.1f, data, FRAME_SIZE, SAMPLE_RATE);
+        first.release();
+        java.util.Set<AnalysisFrame> seen = java.util.Collections.newSetFromMap(new java.util.IdentityHashMap<>());
+        seen.add(first);
+        AnalysisFrame current = null;
+        for (int i = 0; i < 100; i++) {
+            AnalysisFrame next = analyzer.analyze(0.1f, data, FRAME_SIZE, SAMPLE_RATE);
+            if (current != null) current.release();
+            current = next;
+            seen.add(next);
+        }
+        current.release();
+        // The whole run cycles through the fixed pool
+        assertTrue(seen.size() <= 4);
+    }
+
+    @Test
+    public void retainedFramesAreNotReused() {
+        FrameAnalyzer analyzer = new FrameAnalyzer();
+        float[] data = sine(330, 0.4f);
+        AnalysisFrame held = analyzer.analyze(0.2f, data, FRAME_SIZE, SAMPLE_RATE);
+        held.retain();
+        held.release();
+        for (int i = 0; i < 10; i++) {
+            AnalysisFrame frame = analyzer.analyze(0.2f, data, FRAME_SIZE, SAMPLE_RATE);
+            assertNotSame(held, frame);
+            frame.release();
+        }
+        held.release();
+    }
+
+    @Test
+    public void exhaustedPoolDropsFrames() {
+        FrameAnalyzer analyzer = new FrameAnalyzer();
+        float[] data = sine(330, 0.4f);
+        AnalysisFrame[] held = new AnalysisFrame[4];
+        for (int i = 0; i < held.length; i++) {
+            held[i] = analyzer.analyze(0.2f, data, FRAME_SIZE, SAMPLE_RATE);
+            assertNotNull(held[i]);
+        }
+        assertNull(analyzer.analyze(0.2f, data, FRAME_SIZE, SAMPLE_RATE));
+        for (AnalysisFrame frame : held) {
+            frame.release();
+        }
+        assertNotNull(analyzer.analyze(0.2f, data, FRAME_SIZE, SAMPLE_RATE));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void overReleaseThrows() {
+        AnalysisFrame frame = new FrameAnalyzer().analyze(0.1f, sine(100, 0.1f), FRAME_SIZE, SAMPLE_RATE);
+        frame.release();
+        frame.release();
+    }
+
+    @Test
+    public void analysisFillsBandsGainAndNotesOnce() {
+        FrameAnalyzer analyzer = new FrameAnalyzer();
+        analyzer.setNotesEnabled(true);
+        float[] data = sine(440, 0.5f);
+        AnalysisFrame frame = null;
+        for (int i = 0; i < 40; i++) {
+            if (frame != null) frame.release();
+            frame = analyzer.analyze(0.32f, data, FRAME_SIZE, SAMPLE_RATE);
+        }
+        assertTrue(frame.hasBands());
+        assertTrue(frame.hasNotes());
+        assertEquals(analyzer.gain(), frame.gain(), 0f);
+        assertEquals(Math.min(0.32f * frame.gain(), 1f), frame.level(), 1e-6f);
+        // Without a spectrum tracker the bands fall back to time-domain slices
+        SampleBands sampleBands = new SampleBands(frame.numBands());
+        float[] expected = new float[frame.numBands()];
+        sampleBands.compute(frame, expected);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], frame.band(i), 0f);
+        }
+        // A4 is 33 semitones above C2
+        int loudest = 0;
+        for (int i = 1; i < frame.numNotes(); i++) {
+            if (frame.note(i) > frame.note(loudest)) loudest = i;
+        }
+        assertEquals(33, loudest);
+        assertEquals(-1f, frame.pitch(), 0f);
+        frame.release();
+
+        analyzer.setNotesEnabled(false);
+        frame = analyzer.analyze(0.32f, data, FRAME_SIZE, SAMPLE_RATE);
+        assertFalse(frame.hasNotes());
+        frame.release();
+    }
+
+    @Test
+    public void emptyFrameCarriesNoStaleBands() {
+        FrameAnalyzer analyzer = new FrameAnalyzer();
+        float[] data = sine(440, 0.5f);
+        // Leave bands behind in every pooled frame
+        AnalysisFrame[] filled = new AnalysisFrame[4];
+        for (int i = 0; i < filled.length; i++) {
+            filled[i] = analyzer.analyze(0.3f, data, FRAME_SIZE, SAMPLE_RATE);
+            assertTrue(filled[i].hasBands());
+        }
+        for (AnalysisFrame frame : filled) {
+            frame.release();
+        }
+
+        AnalysisFrame empty = analyzer.analyze(0.3f, data, 0, SAMPLE_RATE);
+        assertFalse(empty.hasBands());
+        for (int i = 0; i < empty.numBands(); i++) {
+            assertEquals(0f, empty.band(i), 0f);
+        }
+        empty.release();
+    }
+}
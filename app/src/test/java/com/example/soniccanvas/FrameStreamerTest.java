@@ -0,0 +1,316 @@
+package com.example.soniccanvas;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class FrameStreamerTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int FRAME_SIZE = 800;
+    private static final int BANDS = FrameAnalyzer.NUM_BANDS;
+    private static final int FRAME_BYTES = FrameCodec.frameBytes(BANDS);
+
+    private FrameStreamer streamer;
+    private FrameAnalyzer analyzer;
+    private float[] samples;
+
+    @Before
+    public void setUp() throws IOException {
+        streamer = new FrameStreamer(0, BANDS);
+        streamer.start();
+        analyzer = new FrameAnalyzer();
+        samples = new float[FRAME_SIZE];
+    }
+
+    @After
+    public void tearDown() {
+        streamer.stop();
+    }
+
+    /**
+     * Test client reading whole frames from the stream, as a display would.
+     */
+    private static final class LoopbackClient extends Thread {
+        final SocketChannel channel;
+        final int[] sequences;
+        final long[] latencies;
+        volatile int received = 0;
+        volatile boolean badFrame = false;
+        volatile boolean closed = false;
+
+        LoopbackClient(int port, int capacity) throws IOException {
+            channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            sequences = new int[capacity];
+            latencies = new long[capacity];
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer frame = ByteBuffer.allocate(FRAME_BYTES);
+            try {
+                while (received < sequences.length) {
+                    frame.clear();
+                    while (frame.hasRemaining()) {
+                        if (channel.read(frame) < 0) {
+                            closed = true;
+                            return;
+                        }
+                    }
+                    long now = System.nanoTime();
+                    if (frame.getInt(0) != FrameCodec.MAGIC || frame.getShort(30) != BANDS) {
+                        badFrame = true;
+                        return;
+                    }
+                    sequences[received] = frame.getInt(4);
+                    latencies[received] = now - frame.getLong(8);
+                    received++;
+                }
+            } catch (IOException e) {
+                closed = true;
+            }
+        }
+    }
+
+    @Test
+    public void encodesFixedLayout() {
+        fillSine(0);
+        AnalysisFrame frame = analyzer.analyze(0.2f, samples, FRAME_SIZE, SAMPLE_RATE);
+        ByteBuffer out = ByteBuffer.allocate(FRAME_BYTES + 8);
+        FrameCodec.encode(frame, 42, out, 8);
+        assertEquals(0, out.position());
+        assertEquals(FrameCodec.MAGIC, out.getInt(8));
+        assertEquals(42, out.getInt(12));
+        assertEquals(frame.timestampNanos(), out.getLong(16));
+        assertEquals(frame.rms(), out.getFloat(24), 0f);
+        assertEquals(frame.level(), out.getFloat(28), 0f);
+        assertEquals(frame.beatStrength(), out.getFloat(32), 0f);
+        assertEquals(frame.beat() ? FrameCodec.FLAG_BEAT : 0, out.get(36));
+        assertEquals(FrameCodec.VERSION, out.get(37));
+        assertEquals(BANDS, out.getShort(38));
+        for (int i = 0; i < BANDS; i++) {
+            assertEquals(frame.band(i), out.getFloat(8 + FrameCodec.HEADER_BYTES + 4 * i), 0f);
+        }
+        // A 0.5 sine has an RMS of 0.5/√2
+        assertEquals(0.5f / (float) Math.sqrt(2), frame.rms(), 0.01f);
+        frame.release();
+    }
+
+    @Test
+    public void framesAreDroppedWithoutClients() {
+        fillSine(0);
+        AnalysisFrame frame = analyzer.analyze(0.2f, samples, FRAME_SIZE, SAMPLE_RATE);
+        assertFalse(streamer.offer(frame));
+        assertEquals(0, streamer.droppedFrames());
+        frame.release();
+    }
+
+    @Test
+    public void loopbackDeliversEveryFrameOrCountsIt() throws Exception {
+        int paced = 300;
+        int burst = 20000;
+        LoopbackClient client = new LoopbackClient(streamer.port(), paced + burst);
+        client.start();
+        awaitClients(1);
+
+        // Paced like live audio, but faster: every frame should arrive, in order
+        for (int i = 0; i < paced; i++) {
+            offer(i);
+            Thread.sleep(1);
+        }
+        awaitReceived(client, paced);
+        for (int i = 0; i < paced; i++) {
+            assertEquals(i, client.sequences[i]);
+        }
+
+        // Flat out: the producer never waits, the ring drops what the network cannot take
+        for (int i = 0; i < burst; i++) {
+            offer(paced + i);
+        }
+        awaitIdle(client);
+        // Every frame either arrived or was counted as dropped
+        assertEquals(paced + burst - streamer.droppedFrames(), client.received);
+        for (int i = 1; i < client.received; i++) {
+            assertTrue(client.sequences[i] > client.sequences[i - 1]);
+        }
+        assertFalse(client.badFrame);
+        assertEquals(0, streamer.droppedClients());
+    }
+
+    @Ignore("Benchmark, run by hand")
+    @Test
+    public void loopback_benchmark() throws Exception {
+        int paced = 300;
+        int burst = 20000;
+        LoopbackClient client = new LoopbackClient(streamer.port(), paced + burst);
+        client.start();
+        awaitClients(1);
+
+        for (int i = 0; i < paced; i++) {
+            offer(i);
+            Thread.sleep(1);
+        }
+        awaitReceived(client, paced);
+        long[] latencies = Arrays.copyOf(client.latencies, paced);
+        Arrays.sort(latencies);
+        long p50 = latencies[paced / 2];
+        long p99 = latencies[paced * 99 / 100];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < burst; i++) {
+            offer(paced + i);
+        }
+        long offerNanos = System.nanoTime() - start;
+        awaitIdle(client);
+        long elapsed = System.nanoTime() - start;
+        long delivered = client.received - paced;
+
+        System.out.printf("Frame stream: paced latency p50 %d us, p99 %d us; burst of %d frames in %d ms "
+                        + "(%d frames/s, %.1f MB/s), %d dropped, %.1f frames per write, %.2f us per offer%n",
+                p50 / 1000, p99 / 1000, burst, elapsed / 1_000_000,
+                delivered * 1_000_000_000L / Math.max(1, elapsed),
+                delivered * (double) FRAME_BYTES / elapsed * 1000, streamer.droppedFrames(),
+                streamer.framesPerWrite(), offerNanos / 1000.0 / burst);
+    }
+
+    /** Selector thread that stalls before draining the ring, as if still busy with a write. */
+    private static final class StalledStreamer extends FrameStreamer {
+        final CountDownLatch resume = new CountDownLatch(1);
+
+        StalledStreamer() {
+            super(0, BANDS);
+        }
+
+        @Override
+        void drainRing() {
+            try {
+                resume.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.drainRing();
+        }
+    }
+
+    @Test
+    public void framesQueuedDuringAWriteLeaveTogether() throws Exception {
+        int queued = 16;
+        StalledStreamer stalled = new StalledStreamer();
+        stalled.start();
+        try {
+            LoopbackClient client = new LoopbackClient(stalled.port(), queued);
+            client.start();
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (stalled.clientCount() < 1 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(1, stalled.clientCount());
+
+            for (int i = 0; i < queued; i++) {
+                AnalysisFrame frame = analyze(i);
+                assertTrue(stalled.offer(frame));
+                frame.release();
+            }
+            assertEquals(0, stalled.framesQueued());
+            stalled.resume.countDown();
+
+            awaitReceived(client, queued);
+            for (int i = 0; i < queued; i++) {
+                assertEquals(i, client.sequences[i]);
+            }
+            assertEquals(1, stalled.writes());
+            assertEquals(queued, stalled.framesPerWrite(), 0f);
+            assertEquals(0, stalled.droppedFrames());
+        } finally {
+            stalled.resume.countDown();
+            stalled.stop();
+        }
+    }
+
+    @Test
+    public void slowConsumerIsDroppedWithoutStallingOthers() throws Exception {
+        LoopbackClient fast = new LoopbackClient(streamer.port(), 1_000_000);
+        fast.start();
+        // Never reads; a small receive window makes it back up quickly
+        SocketChannel slow = SocketChannel.open();
+        slow.setOption(StandardSocketOptions.SO_RCVBUF, 4096);
+        slow.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), streamer.port()));
+        awaitClients(2);
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        int i = 0;
+        while (streamer.droppedClients() == 0 && System.nanoTime() < deadline) {
+            offer(i++);
+            if ((i & 15) == 0) Thread.sleep(1);
+        }
+        assertEquals(1, streamer.droppedClients());
+        assertEquals(1, streamer.clientCount());
+
+        // The fast client carries on
+        int before = fast.received;
+        for (int k = 0; k < 100; k++, i++) {
+            offer(i);
+            Thread.sleep(1);
+        }
+        awaitReceived(fast, before + 100);
+        assertFalse(fast.closed);
+        assertFalse(fast.badFrame);
+        slow.close();
+    }
+
+    private void offer(int n) {
+        AnalysisFrame frame = analyze(n);
+        streamer.offer(frame);
+        frame.release();
+    }
+
+    private AnalysisFrame analyze(int n) {
+        fillSine(n);
+        return analyzer.analyze(0.2f, samples, FRAME_SIZE, SAMPLE_RATE);
+    }
+
+    private void fillSine(int frame) {
+        for (int i = 0; i < FRAME_SIZE; i++) {
+            samples[i] = 0.5f * (float) Math.sin(2 * Math.PI * 440 * ((long) frame * FRAME_SIZE + i) / SAMPLE_RATE);
+        }
+    }
+
+    private void awaitClients(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (streamer.clientCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, streamer.clientCount());
+    }
+
+    // Waits until nothing has arrived for a while
+    private static void awaitIdle(LoopbackClient client) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        int last = -1;
+        while (client.received != last && System.nanoTime() < deadline && !client.closed) {
+            last = client.received;
+            Thread.sleep(200);
+        }
+        assertFalse(client.closed);
+    }
+
+    private static void awaitReceived(LoopbackClient client, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (client.received < count && System.nanoTime() < deadline && !client.closed) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, client.received);
+    }
+}
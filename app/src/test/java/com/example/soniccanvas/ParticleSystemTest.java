@@ -0,0 +1,127 @@
+package com.example.soniccanvas;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ParticleSystemTest {
+    private static final float WIDTH = 1080;
+    private static final float HEIGHT = 1920;
+    private static final float FRAME = 1f / 60;
+
+    @Test
+    public void particlesFadeByFractionalSteps() {
+        ParticleSystem system = new ParticleSystem(4, 0, new Random(1));
+        system.spawn(WIDTH, HEIGHT);
+        system.vx[0] = 0;
+        system.vy[0] = 0;
+        system.x[0] = WIDTH / 2;
+        system.y[0] = HEIGHT / 2;
+        system.alpha[0] = 100;
+
+        system.update(FRAME, WIDTH, HEIGHT);
+        assertEquals(100 - ParticleSystem.FADE_PER_SECOND * FRAME, system.alpha[0], 1e-4f);
+
+        // 90 alpha above the floor at 12 per second is 7.5 s
+        for (int i = 0; i < 60 * 7; i++) {
+            system.update(FRAME, WIDTH, HEIGHT);
+        }
+        assertEquals(1, system.count());
+        for (int i = 0; i < 60; i++) {
+            system.update(FRAME, WIDTH, HEIGHT);
+        }
+        assertEquals(0, system.count());
+    }
+
+    @Test
+    public void removeSwapsInTheLastParticle() {
+        ParticleSystem system = new ParticleSystem(8, 0, new Random(2));
+        for (int i = 0; i < 5; i++) {
+            system.spawn(WIDTH, HEIGHT);
+        }
+        float lastX = system.x[4];
+        float lastAlpha = system.alpha[4];
+        system.remove(1);
+        assertEquals(4, system.count());
+        assertEquals(lastX, system.x[1], 0f);
+        assertEquals(lastAlpha, system.alpha[1], 0f);
+    }
+
+    @Test
+    public void capacityIsNeverExceeded() {
+        ParticleSystem system = new ParticleSystem(16, 4, new Random(3));
+        for (int i = 0; i < 20; i++) {
+            system.spawn(WIDTH, HEIGHT);
+        }
+        assertEquals(16, system.count());
+    }
+
+    @Test
+    public void densityFollowsEnergy() {
+        ParticleSystem system = new ParticleSystem(3000, 30, new Random(4));
+        for (int i = 0; i < 60 * 10; i++) {
+            system.update(FRAME, WIDTH, HEIGHT);
+        }
+        int quiet = system.count();
+        assertTrue("quiet " + quiet, quiet <= 30);
+
+        system.setEnergy(1f);
+        for (int i = 0; i < 60 * 5; i++) {
+            system.update(FRAME, WIDTH, HEIGHT);
+        }
+        int loud = system.count();
+        assertTrue("loud " + loud, loud > 1000);
+
+        system.setEnergy(0f);
+        for (int i = 0; i < 60 * 15; i++) {
+            system.update(FRAME, WIDTH, HEIGHT);
+        }
+        assertTrue(system.count() < loud / 10);
+    }
+
+    @Test
+    public void batchesHoldEveryParticleOnce() {
+        ParticleSystem system = new ParticleSystem(500, 0, new Random(5));
+        for (int i = 0; i < 500; i++) {
+            system.spawn(WIDTH, HEIGHT);
+        }
+        system.prepareBatches();
+        int total = 0;
+        for (int b = 0; b < ParticleSystem.BATCHES; b++) {
+            assertEquals(total, system.batchStart(b));
+            total += system.batchCount(b);
+        }
+        assertEquals(500, total);
+
+        double sumX = 0;
+        double expectedX = 0;
+        float[] points = system.points();
+        for (int i = 0; i < 500; i++) {
+            sumX += points[i * 2];
+            expectedX += system.x[i];
+        }
+        assertEquals(expectedX, sumX, 1e-2);
+    }
+
+    @Ignore("Benchmark, run by hand")
+    @Test
+    public void benchmarkThousandsOfParticles() {
+        ParticleSystem system = new ParticleSystem(3000, 30, new Random(6));
+        system.setEnergy(1f);
+        for (int i = 0; i < 600; i++) {
+            system.update(FRAME, WIDTH, HEIGHT);
+            system.prepareBatches();
+        }
+        int frames = 2000;
+        long start = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            system.update(FRAME, WIDTH, HEIGHT);
+            system.prepareBatches();
+        }
+        long perFrame = (System.nanoTime() - start) / frames;
+        System.out.println("Particles: " + system.count() + " live, update + batching " + perFrame + " ns/frame");
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.soniccanvas;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PerfTraceTest {
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("perf-trace").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                assertTrue(file.delete());
+            }
+        }
+        assertTrue(directory.delete());
+    }
+
+    @Test
+    public void decoderMatchesWriterFormat() {
+        assertEquals(PerfTrace.MAGIC, PerfTraceDecoder.MAGIC);
+        assertEquals(PerfTrace.VERSION, PerfTraceDecoder.VERSION);
+        assertEquals(PerfTrace.HEADER_BYTES, PerfTraceDecoder.HEADER_BYTES);
+        assertEquals(PerfTrace.RECORD_BYTES, PerfTraceDecoder.RECORD_BYTES);
+        assertEquals("mic-read", PerfTraceDecoder.stageName(PerfTrace.STAGE_MIC_READ));
+        assertEquals("device-capture", PerfTraceDecoder.stageName(PerfTrace.STAGE_DEVICE_CAPTURE));
+        assertEquals("analysis", PerfTraceDecoder.stageName(PerfTrace.STAGE_ANALYSIS));
+        assertEquals("draw", PerfTraceDecoder.stageName(PerfTrace.STAGE_DRAW));
+    }
+
+    @Test
+    public void recordsRoundTripAcrossFlushes() throws IOException {
+        PerfTrace trace = new PerfTrace(directory, 64, 1 << 20);
+        for (int i = 0; i < 10; i++) {
+            trace.append(1_000_000L * i, PerfTrace.STAGE_DRAW, 2000 + i, i, i % 3);
+        }
+        trace.flush();
+        for (int i = 10; i < 20; i++) {
+            trace.append(1_000_000L * i, PerfTrace.STAGE_ANALYSIS, 2000 + i, 70000, -1);
+        }
+        trace.close();
+
+        PerfTraceDecoder.Trace decoded = PerfTraceDecoder.read(new File(directory, PerfTrace.CURRENT_FILE));
+        assertEquals(20, decoded.records.size());
+        assertEquals(0, decoded.lostRecords);
+        assertTrue(Math.abs(decoded.wallClockMillis - System.currentTimeMillis()) < 60_000);
+        for (int i = 0; i < 20; i++) {
+            PerfTraceDecoder.Record record = decoded.records.get(i);
+            assertEquals(i, record.sequence);
+            assertEquals(1_000_000L * i, record.timestampNanos);
+            assertEquals(2000 + i, record.durationNanos);
+            if (i < 10) {
+                assertEquals(PerfTrace.STAGE_DRAW, record.stage);
+                assertEquals(i, record.bufferFill);
+                assertEquals(i % 3, record.dropped);
+            } else {
+                // Fill is clamped to what a short can hold
+                assertEquals(PerfTrace.STAGE_ANALYSIS, record.stage);
+                assertEquals(Short.MAX_VALUE, record.bufferFill);
+                assertEquals(-1, record.dropped);
+            }
+        }
+        assertFalse(new File(directory, PerfTrace.PREVIOUS_FILE).exists());
+    }
+
+    @Test
+    public void ringOverrunShowsAsLostRecords() throws IOException {
+        PerfTrace trace = new PerfTrace(directory, 16, 1 << 20);
+        for (int i = 0; i < 5; i++) {
+            trace.append(i, PerfTrace.STAGE_MIC_READ, 100, 960, 0);
+        }
+        trace.flush();
+        // Wraps the 16-record ring more than twice before the next flush
+        for (int i = 5; i < 45; i++) {
+            trace.append(i, PerfTrace.STAGE_MIC_READ, 100, 960, 0);
+        }
+        trace.close();
+        assertEquals(45, trace.written());
+
+        PerfTraceDecoder.Trace decoded = PerfTraceDecoder.read(new File(directory, PerfTrace.CURRENT_FILE));
+        assertEquals(5 + 16, decoded.records.size());
+        assertEquals(24, decoded.lostRecords);
+        assertEquals(29, decoded.records.get(5).sequence);
+        assertEquals(44, decoded.records.get(20).sequence);
+    }
+
+    @Test
+    public void fullFileRotates() throws IOException {
+        int maxFileBytes = PerfTrace.HEADER_BYTES + 10 * PerfTrace.RECORD_BYTES;
+        PerfTrace trace = new PerfTrace(directory, 64, maxFileBytes);
+        for (int i = 0; i < 8; i++) {
+            trace.append(i, PerfTrace.STAGE_DRAW, 100, 1, 0);
+        }
+        trace.flush();
+        for (int i = 8; i < 16; i++) {
+            trace.append(i, PerfTrace.STAGE_DRAW, 100, 1, 0);
+        }
+        trace.close();
+
+        PerfTraceDecoder.Trace previous = PerfTraceDecoder.read(new File(directory, PerfTrace.PREVIOUS_FILE));
+        PerfTraceDecoder.Trace current = PerfTraceDecoder.read(new File(directory, PerfTrace.CURRENT_FILE));
+        assertEquals(8, previous.records.size());
+        assertEquals(0, previous.records.get(0).sequence);
+        assertEquals(8, current.records.size());
+        assertEquals(8, current.records.get(0).sequence);
+    }
+
+    @Test
+    public void summaryComputesPercentilesAndBudget() throws IOException {
+        PerfTrace trace = new PerfTrace(directory, 256, 1 << 20);
+        for (int i = 1; i <= 100; i++) {
+            trace.append(i, PerfTrace.STAGE_DRAW, i * 1000, 1, i == 100 ? 3 : 0);
+        }
+        trace.append(101, PerfTrace.STAGE_ANALYSIS, 20_000_000, 2, 0);
+        trace.close();
+
+        PerfTraceDecoder.Trace decoded = PerfTraceDecoder.read(new File(directory, PerfTrace.CURRENT_FILE));
+        Map<Integer, PerfTraceDecoder.StageStats> stats = PerfTraceDecoder.summarize(Collections.singletonList(decoded));
+        PerfTraceDecoder.StageStats draw = stats.get(PerfTrace.STAGE_DRAW);
+        assertEquals(100, draw.count);
+        assertEquals(50_500, draw.meanNanos, 1e-6);
+        assertEquals(50_000, draw.p50Nanos);
+        assertEquals(95_000, draw.p95Nanos);
+        assertEquals(99_000, draw.p99Nanos);
+        assertEquals(100_000, draw.maxNanos);
+        assertEquals(0, draw.overBudget);
+        assertEquals(3, draw.dropped);
+        PerfTraceDecoder.StageStats analysis = stats.get(PerfTrace.STAGE_ANALYSIS);
+        assertEquals(1, analysis.overBudget);
+        assertEquals(2, analysis.maxFill);
+
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        PerfTraceDecoder.printSummary(Arrays.asList(decoded), new java.io.PrintStream(out));
+        assertTrue(out.toString().contains("draw"));
+    }
+
+    @Ignore("Benchmark, run by hand")
+    @Test
+    public void benchmarkRecordingOverhead() throws IOException {
+        PerfTrace trace = new PerfTrace(directory, 4096, 1 << 20);
+        int records = 2_000_000;
+        for (int i = 0; i < records; i++) {
+            long start = System.nanoTime();
+            trace.append(System.nanoTime(), PerfTrace.STAGE_DRAW, System.nanoTime() - start, 1, 0);
+        }
+        long begin = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            long start = System.nanoTime();
+            trace.append(System.nanoTime(), PerfTrace.STAGE_DRAW, System.nanoTime() - start, 1, 0);
+        }
+        double perRecord = (System.nanoTime() - begin) / (double) records;
+        long flushStart = System.nanoTime();
+        trace.flush();
+        long flushNanos = System.nanoTime() - flushStart;
+        trace.close();
+
+        // Four stages per 60 Hz frame, against the 1% budget of 166 us
+        double share = 4 * perRecord / PerfTraceDecoder.FRAME_BUDGET_NANOS;
+        System.out.printf("Perf trace: %.1f ns/record, %.4f%% of a 60 Hz frame at 4 records/frame, "
+                + "flushing a full ring %d us%n", perRecord, share * 100, flushNanos / 1000);
+        assertTrue(share < 0.01);
+    }
+}
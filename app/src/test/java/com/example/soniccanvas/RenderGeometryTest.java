@@ -0,0 +1,119 @@
+package com.example.soniccanvas;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the cached bar/circle geometry against the original per-frame
+ * math. The ignored benchmark reports the per-frame cost of both.
+ */
+public class RenderGeometryTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1400;
+    private static final int FRAME_SIZE = 1024;
+    private static final float SENSITIVITY = 5.0f;
+
+    private static HeapSamples sine(int size) {
+        float[] data = new float[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (float) (0.1 * Math.sin(2 * Math.PI * 440 * i / 48000.0));
+        }
+        HeapSamples samples = new HeapSamples();
+        samples.set(data, size);
+        return samples;
+    }
+
+    // The drawCircular() loop as it was before geometry was cached
+    private static void naiveCircle(SampleSource samples, int numPoints, float[] out) {
+        int size = samples.size();
+        float centerX = WIDTH / 2f;
+        float centerY = HEIGHT / 2f;
+        float baseRadius = Math.min(centerX, centerY) * 0.6f;
+        float angleIncrement = (float) (2 * Math.PI / numPoints);
+        float angle = 0;
+        for (int i = 0; i < numPoints; i++) {
+            int dataIndex = (i * size / numPoints) % size;
+            float amplitude = Math.min(Math.abs(samples.sample(dataIndex)) * SENSITIVITY, 0.8f);
+            float radius = baseRadius + (amplitude * baseRadius * 0.5f);
+            out[2 * i] = centerX + radius * (float) Math.cos(angle);
+            out[2 * i + 1] = centerY + radius * (float) Math.sin(angle);
+            angle += angleIncrement;
+        }
+    }
+
+    @Test
+    public void circleGeometry_matchesPerFrameMath() {
+        HeapSamples samples = sine(FRAME_SIZE);
+        for (int numPoints : new int[] {180, 720}) {
+            CircleGeometry geometry = new CircleGeometry(numPoints);
+            geometry.setSize(WIDTH, HEIGHT);
+            float[] cached = new float[numPoints * 2];
+            float[] naive = new float[numPoints * 2];
+            float[] offsets = new float[numPoints];
+            geometry.computeOffsets(samples, SENSITIVITY, 0.8f, offsets);
+            geometry.project(offsets, cached);
+            naiveCircle(samples, numPoints, naive);
+            // Angles accumulated in float drift slightly from the exact i * increment
+            assertArrayEquals("points=" + numPoints, naive, cached, 0.5f);
+        }
+    }
+
+    @Test
+    public void barGeometry_remapsWhenFrameLengthChanges() {
+        BarGeometry geometry = new BarGeometry(32);
+        geometry.setSize(WIDTH, HEIGHT);
+        SampleBands sampleBands = new SampleBands(32);
+        float[] bands = new float[32];
+        float[] heights = new float[32];
+
+        sampleBands.compute(sine(FRAME_SIZE), bands);
+        geometry.computeBandHeights(bands, SENSITIVITY, heights);
+        for (float h : heights) {
+            assertTrue(h >= 10 && h <= HEIGHT * 0.8f);
+        }
+
+        // A shorter frame leaves the trailing bars with no samples, at minimum height
+        sampleBands.compute(sine(16), bands);
+        geometry.computeBandHeights(bands, SENSITIVITY, heights);
+        assertEquals(10f, heights[31], 0f);
+        assertTrue(geometry.right(31) <= WIDTH);
+    }
+
+    @Ignore("Benchmark, run by hand")
+    @Test
+    public void circleGeometry_benchmark() {
+        HeapSamples samples = sine(FRAME_SIZE);
+        int frames = 20000;
+        for (int numPoints : new int[] {180, 720}) {
+            CircleGeometry geometry = new CircleGeometry(numPoints);
+            geometry.setSize(WIDTH, HEIGHT);
+            float[] out = new float[numPoints * 2];
+            float[] offsets = new float[numPoints];
+
+            // Warm both paths up before timing
+            for (int i = 0; i < frames / 4; i++) {
+                naiveCircle(samples, numPoints, out);
+                geometry.computeOffsets(samples, SENSITIVITY, 0.8f, offsets);
+                geometry.project(offsets, out);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                naiveCircle(samples, numPoints, out);
+            }
+            long naiveNanos = (System.nanoTime() - start) / frames;
+
+            start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                geometry.computeOffsets(samples, SENSITIVITY, 0.8f, offsets);
+                geometry.project(offsets, out);
+            }
+            long cachedNanos = (System.nanoTime() - start) / frames;
+
+            System.out.println("circle " + numPoints + " points: per-frame trig " + naiveNanos
+                    + " ns/frame, cached geometry " + cachedNanos + " ns/frame");
+        }
+    }
+}
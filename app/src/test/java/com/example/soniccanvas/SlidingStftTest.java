@@ -0,0 +1,181 @@
+package com.example.soniccanvas;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SlidingStftTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int FFT_SIZE = SpectrumTracker.FFT_SIZE;
+    private static final int BANDS = 32;
+
+    @Test
+    public void windowTablesArePeriodic() {
+        float[] hann = WindowFunction.HANN.table(FFT_SIZE);
+        float[] hamming = WindowFunction.HAMMING.table(FFT_SIZE);
+        float[] blackmanHarris = WindowFunction.BLACKMAN_HARRIS.table(FFT_SIZE);
+        assertEquals(FFT_SIZE / 2.0, WindowFunction.sum(hann), 1e-3);
+        assertEquals(FFT_SIZE * 0.54, WindowFunction.sum(hamming), 1e-3);
+        assertEquals(FFT_SIZE * 0.35875, WindowFunction.sum(blackmanHarris), 1e-3);
+        assertEquals(0f, hann[0], 1e-7f);
+        assertEquals(0.08f, hamming[0], 1e-6f);
+        assertEquals(1f, blackmanHarris[FFT_SIZE / 2], 1e-6f);
+        for (float[] table : new float[][]{hann, hamming, blackmanHarris}) {
+            for (int i = 1; i < FFT_SIZE; i++) {
+                assertEquals(table[i], table[FFT_SIZE - i], 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    public void spectrumRateIsIndependentOfChunkSize() {
+        float[] signal = signal(SAMPLE_RATE);
+        for (SlidingStft.Overlap overlap : SlidingStft.Overlap.values()) {
+            float[] reference = null;
+            for (int chunk : new int[]{1, 37, 480, 4096}) {
+                float[] last = new float[BANDS];
+                SlidingStft stft = stft(false, overlap, bands -> System.arraycopy(bands, 0, last, 0, BANDS));
+                for (int offset = 0; offset < signal.length; offset += chunk) {
+                    stft.write(signal, offset, Math.min(chunk, signal.length - offset));
+                }
+                int hop = FFT_SIZE / overlap.divisor;
+                assertEquals(hop, stft.hopSize());
+                assertEquals(overlap + " chunk " + chunk, 1 + (signal.length - FFT_SIZE) / hop, stft.frames());
+                if (reference == null) {
+                    reference = last;
+                } else {
+                    assertArrayEquals(overlap + " chunk " + chunk, reference, last, 0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void framesMatchContiguousWindows() {
+        float[] signal = signal(8 * FFT_SIZE);
+        List<float[]> spectra = new ArrayList<>();
+        SlidingStft stft = stft(false, SlidingStft.Overlap.THREE_QUARTERS, bands -> spectra.add(bands.clone()));
+        stft.write(signal, 0, signal.length);
+
+        FloatSpectrumEngine engine = new FloatSpectrumEngine(FFT_SIZE);
+        BandLayout layout = new BandLayout(FFT_SIZE, SAMPLE_RATE, BANDS);
+        float[] expected = new float[BANDS];
+        int hop = FFT_SIZE / 4;
+        for (int k = 0; k < spectra.size(); k++) {
+            engine.analyze(signal, k * hop, layout, expected);
+            assertArrayEquals("frame " + k, expected, spectra.get(k), 0f);
+        }
+        assertEquals(1 + (signal.length - FFT_SIZE) / hop, spectra.size());
+    }
+
+    @Test
+    public void pcmRingFeedsTheFixedPointEngineDirectly() {
+        float[] signal = signal(4 * FFT_SIZE);
+        short[] pcm = new short[signal.length];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = SlidingStft.toPcm16(signal[i]);
+        }
+        List<float[]> spectra = new ArrayList<>();
+        SlidingStft stft = stft(true, SlidingStft.Overlap.HALF, bands -> spectra.add(bands.clone()));
+        stft.write(pcm, 0, pcm.length);
+
+        Q15SpectrumEngine engine = new Q15SpectrumEngine(FFT_SIZE);
+        BandLayout layout = new BandLayout(FFT_SIZE, SAMPLE_RATE, BANDS);
+        float[] expected = new float[BANDS];
+        for (int k = 0; k < spectra.size(); k++) {
+            engine.analyze(pcm, k * FFT_SIZE / 2, layout, expected);
+            assertArrayEquals("frame " + k, expected, spectra.get(k), 0f);
+        }
+        assertEquals(7, spectra.size());
+    }
+
+    @Test
+    public void resetWaitsForAFullWindow() {
+        float[] signal = signal(FFT_SIZE);
+        int[] count = new int[1];
+        SlidingStft stft = stft(false, SlidingStft.Overlap.THREE_QUARTERS, bands -> count[0]++);
+        stft.write(signal, 0, FFT_SIZE);
+        assertEquals(1, count[0]);
+        stft.reset();
+        stft.write(signal, 0, FFT_SIZE - 1);
+        assertEquals(1, count[0]);
+        stft.write(signal, 0, 1);
+        assertEquals(2, count[0]);
+    }
+
+    @Test
+    public void windowsAgreeOnAToneAndDifferInLeakage() {
+        // Between two bins, so the leakage is at its worst
+        float frequency = 100.5f * SAMPLE_RATE / FFT_SIZE;
+        float[] tone = new float[FFT_SIZE];
+        for (int i = 0; i < FFT_SIZE; i++) {
+            tone[i] = 0.5f * (float) Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE);
+        }
+        BandLayout layout = new BandLayout(FFT_SIZE, SAMPLE_RATE, BANDS);
+        int far = BANDS - 1;
+        float[] leakage = new float[WindowFunction.values().length];
+        for (WindowFunction window : WindowFunction.values()) {
+            for (SpectrumEngine engine : new SpectrumEngine[]{new FloatSpectrumEngine(FFT_SIZE), new Q15SpectrumEngine(FFT_SIZE)}) {
+                engine.setWindow(window);
+                assertSame(window, engine.window());
+                float[] bands = new float[BANDS];
+                engine.analyze(tone, 0, layout, bands);
+                int loudest = 0;
+                float total = 0;
+                for (int b = 0; b < BANDS; b++) {
+                    if (bands[b] > bands[loudest]) loudest = b;
+                    total += bands[b];
+                }
+                // Coherent-gain scaling puts a half-scale tone at about 1 whichever window is used
+                assertEquals(window + " " + engine.getClass().getSimpleName(), 1f, total, 0.6f);
+                assertTrue(bands[loudest] > 0.25f);
+                if (engine instanceof FloatSpectrumEngine) {
+                    leakage[window.ordinal()] = bands[far] / bands[loudest];
+                }
+            }
+        }
+        // Hamming's sidelobes stay high; Blackman-Harris's are far below both others
+        assertTrue(leakage[WindowFunction.HAMMING.ordinal()] > leakage[WindowFunction.HANN.ordinal()]);
+        assertTrue(leakage[WindowFunction.BLACKMAN_HARRIS.ordinal()] < leakage[WindowFunction.HAMMING.ordinal()] * 0.01f);
+    }
+
+    @Test
+    public void overlapSetsSpectrumRate() {
+        float[] signal = signal(SAMPLE_RATE);
+        int seconds = 4;
+        for (SlidingStft.Overlap overlap : SlidingStft.Overlap.values()) {
+            SlidingStft stft = stft(false, overlap, bands -> { });
+            // The first spectrum waits for a whole window; count from a full history
+            stft.write(signal, 0, signal.length);
+            long frames = stft.frames();
+            for (int i = 0; i < seconds; i++) {
+                stft.write(signal, 0, signal.length);
+            }
+            frames = stft.frames() - frames;
+            assertEquals(overlap.toString(), (double) SAMPLE_RATE / stft.hopSize(),
+                    (double) frames / seconds, 1.0 / seconds);
+        }
+    }
+
+    private static SlidingStft stft(boolean pcm, SlidingStft.Overlap overlap, SlidingStft.Listener listener) {
+        SpectrumEngine engine = pcm ? new Q15SpectrumEngine(FFT_SIZE) : new FloatSpectrumEngine(FFT_SIZE);
+        SlidingStft stft = new SlidingStft(engine, pcm, BANDS, listener);
+        stft.setLayout(new BandLayout(FFT_SIZE, SAMPLE_RATE, BANDS));
+        stft.setOverlap(overlap);
+        return stft;
+    }
+
+    private static float[] signal(int length) {
+        float[] signal = new float[length];
+        java.util.Random random = new java.util.Random(3);
+        for (int i = 0; i < length; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            signal[i] = (float) (0.3 * Math.sin(2 * Math.PI * 220 * t) + 0.2 * Math.sin(2 * Math.PI * 3520 * t)
+                    + 0.05 * (random.nextDouble() - 0.5));
+        }
+        return signal;
+    }
+}
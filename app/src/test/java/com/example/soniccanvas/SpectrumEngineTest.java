@@ -0,0 +1,141 @@
+package com.example.soniccanvas;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpectrumEngineTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int FFT_SIZE = SpectrumTracker.FFT_SIZE;
+    private static final int BANDS = 32;
+
+    @Test
+    public void q15FftMatchesFloatFft() {
+        int n = 256;
+        int[] re = new int[n];
+        int[] im = new int[n];
+        float[] fre = new float[n];
+        float[] fim = new float[n];
+        java.util.Random random = new java.util.Random(5);
+        for (int i = 0; i < n; i++) {
+            re[i] = random.nextInt(20000) - 10000;
+            fre[i] = re[i];
+        }
+        int exponent = new Q15Fft(n).forward(re, im);
+        new Fft(n).forward(fre, fim);
+
+        float peak = 0;
+        for (int k = 0; k < n; k++) {
+            peak = Math.max(peak, (float) Math.hypot(fre[k], fim[k]));
+        }
+        for (int k = 0; k < n; k++) {
+            assertEquals(fre[k], Math.scalb((float) re[k], exponent), peak * 2e-3f);
+            assertEquals(fim[k], Math.scalb((float) im[k], exponent), peak * 2e-3f);
+        }
+    }
+
+    @Test
+    public void fullScaleInputDoesNotOverflow() {
+        int n = 1024;
+        int[] re = new int[n];
+        int[] im = new int[n];
+        for (int i = 0; i < n; i++) {
+            re[i] = 32767;
+        }
+        int exponent = new Q15Fft(n).forward(re, im);
+        // All energy lands in DC: 1024 · 32767
+        assertEquals(1024.0 * 32767, Math.scalb((double) re[0], exponent), 1024.0 * 32767 * 1e-3);
+        for (int k = 1; k < n; k++) {
+            assertEquals(0, Math.scalb((double) Math.abs(re[k]) + Math.abs(im[k]), exponent), 1024.0 * 32767 * 1e-3);
+        }
+    }
+
+    @Test
+    public void enginesAgreeOnMusicLikeInput() {
+        float[] levels = {0.9f, 0.1f, 0.003f};
+        for (float level : levels) {
+            short[] pcm = musicLike(level);
+            float[] expected = new float[BANDS];
+            float[] actual = new float[BANDS];
+            BandLayout layout = new BandLayout(FFT_SIZE, SAMPLE_RATE, BANDS);
+            new FloatSpectrumEngine(FFT_SIZE).analyze(pcm, 0, layout, expected);
+            new Q15SpectrumEngine(FFT_SIZE).analyze(pcm, 0, layout, actual);
+
+            float peak = 0;
+            for (float band : expected) {
+                peak = Math.max(peak, band);
+            }
+            for (int b = 0; b < BANDS; b++) {
+                // Alpha-max-beta-min is within 4%; quantisation noise is bounded by the loudest band
+                float tolerance = expected[b] * 0.05f + peak * 0.005f;
+                assertEquals("level " + level + " band " + b, expected[b], actual[b], tolerance);
+            }
+        }
+    }
+
+    @Test
+    public void floatInputIsQuantised() {
+        short[] pcm = musicLike(0.5f);
+        float[] samples = new float[FFT_SIZE];
+        for (int i = 0; i < FFT_SIZE; i++) {
+            samples[i] = pcm[i] / 32768f;
+        }
+        BandLayout layout = new BandLayout(FFT_SIZE, SAMPLE_RATE, BANDS);
+        Q15SpectrumEngine engine = new Q15SpectrumEngine(FFT_SIZE);
+        float[] fromPcm = new float[BANDS];
+        float[] fromFloat = new float[BANDS];
+        engine.analyze(pcm, 0, layout, fromPcm);
+        engine.analyze(samples, 0, layout, fromFloat);
+        assertArrayEquals(fromPcm, fromFloat, 0f);
+    }
+
+    @Test
+    public void bandsCoverTheSpectrumInOrder() {
+        BandLayout layout = new BandLayout(FFT_SIZE, SAMPLE_RATE, BANDS);
+        for (int b = 0; b < BANDS; b++) {
+            assertTrue(layout.end(b) > layout.start(b));
+            if (b > 0) assertEquals(layout.end(b - 1), layout.start(b));
+        }
+        assertTrue(layout.end(BANDS - 1) <= FFT_SIZE / 2 + 1);
+    }
+
+    @Ignore("Benchmark, run by hand")
+    @Test
+    public void benchmarkEngines() {
+        short[] pcm = musicLike(0.5f);
+        BandLayout layout = new BandLayout(FFT_SIZE, SAMPLE_RATE, BANDS);
+        float[] bands = new float[BANDS];
+        SpectrumEngine[] engines = {new FloatSpectrumEngine(FFT_SIZE), new Q15SpectrumEngine(FFT_SIZE)};
+        String[] names = {"float", "Q15"};
+        for (int e = 0; e < engines.length; e++) {
+            for (int i = 0; i < 2000; i++) {
+                engines[e].analyze(pcm, 0, layout, bands);
+            }
+            int iterations = 5000;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                engines[e].analyze(pcm, 0, layout, bands);
+            }
+            long perFrame = (System.nanoTime() - start) / iterations;
+            System.out.println("Spectrum engine " + names[e] + " (" + FFT_SIZE + "-point, " + BANDS + " bands): "
+                    + perFrame + " ns/frame, " + (1_000_000_000L / Math.max(1, perFrame)) + " frames/s");
+        }
+    }
+
+    // A few harmonics plus noise, scaled to peak at roughly {@code level} of full scale
+    private static short[] musicLike(float level) {
+        short[] pcm = new short[FFT_SIZE];
+        java.util.Random random = new java.util.Random(9);
+        for (int i = 0; i < FFT_SIZE; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            double x = 0.4 * Math.sin(2 * Math.PI * 110 * t)
+                    + 0.25 * Math.sin(2 * Math.PI * 440 * t)
+                    + 0.15 * Math.sin(2 * Math.PI * 1760 * t)
+                    + 0.05 * Math.sin(2 * Math.PI * 7040 * t)
+                    + 0.02 * (random.nextDouble() - 0.5);
+            pcm[i] = (short) Math.round(x / 0.87 * level * 32767);
+        }
+        return pcm;
+    }
+}
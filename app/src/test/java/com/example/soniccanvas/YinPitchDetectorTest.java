@@ -0,0 +1,166 @@
+package com.example.soniccanvas;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class YinPitchDetectorTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int WINDOW = 2048;
+
+    @Test
+    public void fftMatchesNaiveDft() {
+        int n = 64;
+        float[] re = new float[n];
+        float[] im = new float[n];
+        java.util.Random random = new java.util.Random(7);
+        for (int i = 0; i < n; i++) {
+            re[i] = random.nextFloat() * 2 - 1;
+            im[i] = random.nextFloat() * 2 - 1;
+        }
+        float[] inRe = re.clone();
+        float[] inIm = im.clone();
+        new Fft(n).forward(re, im);
+
+        for (int k = 0; k < n; k++) {
+            double sumRe = 0;
+            double sumIm = 0;
+            for (int t = 0; t < n; t++) {
+                double angle = -2 * Math.PI * k * t / n;
+                sumRe += inRe[t] * Math.cos(angle) - inIm[t] * Math.sin(angle);
+                sumIm += inRe[t] * Math.sin(angle) + inIm[t] * Math.cos(angle);
+            }
+            assertEquals(sumRe, re[k], 1e-3);
+            assertEquals(sumIm, im[k], 1e-3);
+        }
+    }
+
+    @Test
+    public void inverseRestoresInput() {
+        int n = 256;
+        float[] re = new float[n];
+        float[] im = new float[n];
+        for (int i = 0; i < n; i++) {
+            re[i] = (float) Math.sin(i * 0.3);
+        }
+        float[] original = re.clone();
+        Fft fft = new Fft(n);
+        fft.forward(re, im);
+        fft.inverse(re, im);
+        for (int i = 0; i < n; i++) {
+            assertEquals(original[i], re[i] / n, 1e-4);
+            assertEquals(0, im[i] / n, 1e-4);
+        }
+    }
+
+    @Test
+    public void fftDifferenceMatchesDirectSum() {
+        YinPitchDetector detector = new YinPitchDetector(WINDOW);
+        float[] samples = new float[WINDOW];
+        java.util.Random random = new java.util.Random(3);
+        for (int i = 0; i < WINDOW; i++) {
+            samples[i] = 0.5f * (float) Math.sin(2 * Math.PI * 310 * i / SAMPLE_RATE) + 0.1f * (random.nextFloat() - 0.5f);
+        }
+        assertTrue(detector.computeDifference(samples, 0));
+        float[] difference = detector.difference();
+
+        int w = WINDOW / 2;
+        for (int tau = 0; tau < w; tau++) {
+            double expected = 0;
+            for (int j = 0; j < w; j++) {
+                double delta = samples[j] - samples[j + tau];
+                expected += delta * delta;
+            }
+            assertEquals("tau " + tau, expected, difference[tau], 1e-3 + expected * 1e-4);
+        }
+    }
+
+    @Test
+    public void detectsSinePitch() {
+        YinPitchDetector detector = new YinPitchDetector(WINDOW);
+        float[] frequencies = {82.41f, 110f, 220f, 440f, 659.25f, 1318.5f};
+        for (float frequency : frequencies) {
+            float detected = detector.detect(sine(frequency, 0.5f), 0, SAMPLE_RATE);
+            // Well inside the few cents a tuner has to resolve
+            assertEquals(frequency, detected, frequency * 0.002f);
+            assertTrue(detector.probability() > 0.9f);
+        }
+    }
+
+    @Test
+    public void detectsFundamentalOfHarmonicTone() {
+        YinPitchDetector detector = new YinPitchDetector(WINDOW);
+        float[] samples = new float[WINDOW];
+        for (int i = 0; i < WINDOW; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            samples[i] = (float) (0.4 * Math.sin(2 * Math.PI * 196 * t)
+                    + 0.3 * Math.sin(2 * Math.PI * 392 * t)
+                    + 0.2 * Math.sin(2 * Math.PI * 588 * t));
+        }
+        assertEquals(196f, detector.detect(samples, 0, SAMPLE_RATE), 0.5f);
+    }
+
+    @Test
+    public void silenceIsUnvoiced() {
+        YinPitchDetector detector = new YinPitchDetector(WINDOW);
+        assertEquals(-1f, detector.detect(new float[WINDOW], 0, SAMPLE_RATE), 0f);
+    }
+
+    @Test
+    public void noteNames() {
+        assertEquals("A4", NoteNames.name(NoteNames.nearestNote(440f)));
+        assertEquals("E2", NoteNames.name(NoteNames.nearestNote(82.41f)));
+        assertEquals(0f, NoteNames.cents(440f), 0.01f);
+        assertEquals(-50f, NoteNames.cents(440f * (float) Math.pow(2, -0.5 / 12)), 0.5f);
+        char[] text = new char[16];
+        int length = TunerRenderer.formatFrequency(440.04f, text);
+        assertEquals("440.0 Hz", new String(text, 0, length));
+    }
+
+    @Test
+    public void trackerStartsOverAfterARestart() {
+        PitchTracker tracker = new PitchTracker();
+        tracker.setEnabled(true);
+        float[] samples = sine(220f, 0.5f);
+        tracker.onAudioData(0.5f, samples, WINDOW, SAMPLE_RATE);
+        assertEquals(220f, tracker.getFrequency(), 0.5f);
+
+        // A quarter window after re-enabling is not enough to detect on
+        tracker.setEnabled(false);
+        tracker.setEnabled(true);
+        tracker.onAudioData(0.5f, samples, WINDOW / 4, SAMPLE_RATE);
+        assertEquals(-1f, tracker.getFrequency(), 0f);
+
+        tracker.onAudioData(0.5f, samples, WINDOW, SAMPLE_RATE);
+        assertEquals(220f, tracker.getFrequency(), 0.5f);
+        tracker.onStateChanged(CaptureController.State.STOPPING, CaptureController.Source.MICROPHONE);
+        tracker.onAudioData(0.5f, samples, WINDOW / 4, SAMPLE_RATE);
+        assertEquals(-1f, tracker.getFrequency(), 0f);
+    }
+
+    @Ignore("Benchmark, run by hand")
+    @Test
+    public void benchmarkDetect() {
+        YinPitchDetector detector = new YinPitchDetector(WINDOW);
+        float[] samples = sine(220f, 0.5f);
+        for (int i = 0; i < 200; i++) {
+            detector.detect(samples, 0, SAMPLE_RATE);
+        }
+        int iterations = 1000;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            detector.detect(samples, 0, SAMPLE_RATE);
+        }
+        long perFrame = (System.nanoTime() - start) / iterations;
+        System.out.println("YIN (" + WINDOW + " samples, FFT difference): " + perFrame + " ns/frame");
+    }
+
+    private static float[] sine(float frequency, float amplitude) {
+        float[] samples = new float[WINDOW];
+        for (int i = 0; i < WINDOW; i++) {
+            samples[i] = amplitude * (float) Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE);
+        }
+        return samples;
+    }
+}
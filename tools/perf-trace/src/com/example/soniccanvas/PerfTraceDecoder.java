@@ -0,0 +1,208 @@
+package com.example.soniccanvas;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Decodes PerfTrace files into a timeline and per-stage statistics.
+ *
+ * Depends only on the JDK, so it runs straight from source without a build:
+ *
+ * <pre>
+ * adb exec-out run-as com.example.soniccanvas cat files/perf-trace/trace-0.bin &gt; trace-0.bin
+ * java tools/perf-trace/src/com/example/soniccanvas/PerfTraceDecoder.java [--timeline] trace-1.bin trace-0.bin
+ * </pre>
+ *
+ * The format constants are repeated here for that reason. The app's unit
+ * tests compile this file too, and PerfTraceTest checks they still match
+ * the writer.
+ */
+public final class PerfTraceDecoder {
+    static final int MAGIC = 0x53435054;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int RECORD_BYTES = 24;
+    static final String[] STAGE_NAMES = {"unknown", "mic-read", "device-capture", "analysis", "draw"};
+    // A stage taking longer than one 60 Hz frame is flagged in the summary
+    static final long FRAME_BUDGET_NANOS = 16_666_667L;
+
+    static final class Record {
+        long timestampNanos;
+        int durationNanos;
+        int stage;
+        int bufferFill;
+        int dropped;
+        int sequence;
+    }
+
+    static final class Trace {
+        long wallClockMillis;
+        long originNanos;
+        final List<Record> records = new ArrayList<>();
+        // Records overwritten in the ring before they were flushed
+        long lostRecords;
+    }
+
+    static final class StageStats {
+        int count;
+        double meanNanos;
+        long p50Nanos;
+        long p95Nanos;
+        long p99Nanos;
+        long maxNanos;
+        int overBudget;
+        long dropped;
+        int maxFill;
+    }
+
+    private PerfTraceDecoder() {
+    }
+
+    static String stageName(int stage) {
+        return stage > 0 && stage < STAGE_NAMES.length ? STAGE_NAMES[stage] : STAGE_NAMES[0];
+    }
+
+    static Trace read(File file) throws IOException {
+        ByteBuffer bytes;
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            bytes = ByteBuffer.allocate((int) channel.size());
+            while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                // Keep reading until the whole file is in memory
+            }
+        }
+        bytes.flip();
+        if (bytes.remaining() < HEADER_BYTES || bytes.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a performance trace");
+        }
+        int version = bytes.getShort(4);
+        int recordBytes = bytes.getShort(6);
+        if (version != VERSION || recordBytes != RECORD_BYTES) {
+            throw new IOException(file + ": unsupported version " + version + " with " + recordBytes + "-byte records");
+        }
+
+        Trace trace = new Trace();
+        trace.wallClockMillis = bytes.getLong(8);
+        trace.originNanos = bytes.getLong(16);
+        Record previous = null;
+        // A record cut short by the process dying mid-write is ignored
+        for (int at = HEADER_BYTES; at + RECORD_BYTES <= bytes.limit(); at += RECORD_BYTES) {
+            Record record = new Record();
+            record.timestampNanos = bytes.getLong(at);
+            record.durationNanos = bytes.getInt(at + 8);
+            record.stage = bytes.getShort(at + 12);
+            record.bufferFill = bytes.getShort(at + 14);
+            record.dropped = bytes.getInt(at + 16);
+            record.sequence = bytes.getInt(at + 20);
+            if (previous != null) {
+                int gap = record.sequence - previous.sequence - 1;
+                if (gap > 0) trace.lostRecords += gap;
+            }
+            trace.records.add(record);
+            previous = record;
+        }
+        return trace;
+    }
+
+    static Map<Integer, StageStats> summarize(List<Trace> traces) {
+        Map<Integer, List<Record>> byStage = new TreeMap<>();
+        for (Trace trace : traces) {
+            for (Record record : trace.records) {
+                List<Record> list = byStage.get(record.stage);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    byStage.put(record.stage, list);
+                }
+                list.add(record);
+            }
+        }
+
+        Map<Integer, StageStats> stats = new TreeMap<>();
+        for (Map.Entry<Integer, List<Record>> entry : byStage.entrySet()) {
+            List<Record> records = entry.getValue();
+            long[] durations = new long[records.size()];
+            StageStats s = new StageStats();
+            double total = 0;
+            for (int i = 0; i < durations.length; i++) {
+                Record record = records.get(i);
+                durations[i] = record.durationNanos;
+                total += record.durationNanos;
+                if (record.durationNanos > FRAME_BUDGET_NANOS) s.overBudget++;
+                s.dropped += record.dropped;
+                s.maxFill = Math.max(s.maxFill, record.bufferFill);
+            }
+            Arrays.sort(durations);
+            s.count = durations.length;
+            s.meanNanos = total / durations.length;
+            s.p50Nanos = percentile(durations, 50);
+            s.p95Nanos = percentile(durations, 95);
+            s.p99Nanos = percentile(durations, 99);
+            s.maxNanos = durations[durations.length - 1];
+            stats.put(entry.getKey(), s);
+        }
+        return stats;
+    }
+
+    // Nearest-rank percentile of sorted values
+    static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    static void printTimeline(Trace trace, PrintStream out) {
+        for (Record record : trace.records) {
+            out.printf("%12.3f ms  #%-8d %-15s %9.1f us  fill %-5d dropped %d%n",
+                    (record.timestampNanos - trace.originNanos) / 1e6, record.sequence, stageName(record.stage),
+                    record.durationNanos / 1e3, record.bufferFill, record.dropped);
+        }
+    }
+
+    static void printSummary(List<Trace> traces, PrintStream out) {
+        long lost = 0;
+        int records = 0;
+        for (Trace trace : traces) {
+            lost += trace.lostRecords;
+            records += trace.records.size();
+        }
+        out.printf("%d records in %d file(s), %d lost to ring overruns%n", records, traces.size(), lost);
+        out.printf("%-15s %8s %9s %9s %9s %9s %9s %6s %8s %5s%n",
+                "stage", "count", "mean us", "p50 us", "p95 us", "p99 us", "max us", ">16ms", "dropped", "fill");
+        for (Map.Entry<Integer, StageStats> entry : summarize(traces).entrySet()) {
+            StageStats s = entry.getValue();
+            out.printf("%-15s %8d %9.1f %9.1f %9.1f %9.1f %9.1f %6d %8d %5d%n",
+                    stageName(entry.getKey()), s.count, s.meanNanos / 1e3, s.p50Nanos / 1e3, s.p95Nanos / 1e3,
+                    s.p99Nanos / 1e3, s.maxNanos / 1e3, s.overBudget, s.dropped, s.maxFill);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean timeline = false;
+        List<Trace> traces = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--timeline")) {
+                timeline = true;
+            } else {
+                traces.add(read(new File(arg)));
+            }
+        }
+        if (traces.isEmpty()) {
+            System.err.println("Usage: PerfTraceDecoder [--timeline] trace-1.bin trace-0.bin");
+            System.exit(2);
+        }
+        if (timeline) {
+            for (Trace trace : traces) {
+                System.out.printf("Trace started %tF %<tT.%<tL%n", trace.wallClockMillis);
+                printTimeline(trace, System.out);
+            }
+        }
+        printSummary(traces, System.out);
+    }
+}